@@ -0,0 +1,91 @@
+package com.kakreak;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class DataSourceConfig {
+
+    // boot backs off from the jdbc pool once an r2dbc ConnectionFactory exists,
+    // the blocking daos, jpa and flyway keep theirs by declaring it here
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 SlowQueryLog slowQueryLog,
+                                 @Value("${customer.slow-queries.threshold:100ms}") Duration threshold,
+                                 @Value("${customer.slow-queries.sample-rate:0}") double sampleRate,
+                                 @Value("${customer.slow-queries.capture-parameters:false}") boolean captureParameters,
+                                 @Value("${customer.replicas.urls:}") List<String> replicaUrls,
+                                 @Value("${customer.replicas.max-lag:1s}") Duration maxLag,
+                                 @Value("${customer.replicas.check-interval:1s}") Duration checkInterval) {
+        HikariDataSource pool = pool(properties, environment, properties.determineUrl());
+        DataSource dataSource = pool;
+        if (!replicaUrls.isEmpty()) {
+            // the replicas share the credentials and pool settings of the primary
+            List<DataSource> replicas = new ArrayList<>();
+            for (int i = 0; i < replicaUrls.size(); i++) {
+                HikariDataSource replica = pool(properties, environment, replicaUrls.get(i));
+                replica.setPoolName("replica-" + (i + 1));
+                replica.setReadOnly(true);
+                replicas.add(replica);
+            }
+            dataSource = ReplicaRoutingDataSource.create(pool, replicas, maxLag, checkInterval);
+        }
+        return SlowQueryDataSource.wrap(dataSource, slowQueryLog, threshold, sampleRate, captureParameters);
+    }
+
+    @Bean
+    public SlowQueryLog slowQueryLog(@Value("${customer.slow-queries.capacity:500}") int capacity) {
+        return new SlowQueryLog(capacity);
+    }
+
+    @Bean
+    public MeterBinder replicaLagMetrics(DataSource dataSource) {
+        return registry -> {
+            ReplicaRoutingDataSource routing = unwrapRouting(dataSource);
+            if (routing == null) {
+                return;
+            }
+            routing.lagSeconds().keySet().forEach(replica -> Gauge
+                    .builder("customer.datasource.replica.lag", routing, r -> r.lagSeconds().get(replica))
+                    .tag("replica", replica)
+                    .baseUnit("seconds")
+                    .register(registry));
+        };
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String url) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        return pool;
+    }
+
+    private static ReplicaRoutingDataSource unwrapRouting(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(ReplicaRoutingDataSource.class)
+                    ? dataSource.unwrap(ReplicaRoutingDataSource.class)
+                    : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
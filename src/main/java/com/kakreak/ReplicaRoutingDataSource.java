@@ -0,0 +1,254 @@
+package com.kakreak;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// sends read only transactions to the replicas, round robin over those no further behind the
+// primary than the allowed lag, and everything else, or everything when no replica keeps up,
+// to the primary
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+
+    // everything the primary has written so far, committed or not, a replica that has replayed
+    // up to here holds every transaction committed before the position was read
+    private static final String PRIMARY_POSITION_SQL = """
+            SELECT pg_current_wal_insert_lsn() - '0/0'
+            """;
+
+    // NULL until the replica has replayed anything, it cannot be told apart from one that is gone
+    private static final String REPLICA_POSITION_SQL = """
+            SELECT pg_is_in_recovery(), pg_last_wal_replay_lsn() - '0/0'
+            """;
+
+    // how far back primary positions are kept, the lag of a replica further behind is unknown
+    private static final Duration POSITION_HISTORY = Duration.ofMinutes(5);
+
+    // the server a request reads from, once chosen it only ever falls back to the primary. A
+    // version read first and rows read after it then come from a server at least as far along,
+    // never from a replica that is further behind
+    private static final ThreadLocal<String[]> PINNED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    // primary positions by the time they were read, oldest first, only the lag checker touches it
+    private final Deque<Position> primaryPositions = new ArrayDeque<>();
+    private final ScheduledExecutorService lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-replica-lag-checker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Position(long lsn, long nanos) {
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile double lagSeconds = Double.NaN;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag) {
+        this.primary = primary;
+        this.maxLagMillis = maxLag.toMillis();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + (i + 1), replicas.get(i));
+            this.replicas.add(replica);
+            targets.put(replica.name, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    // jpa takes the connection while it begins a transaction, before the transaction is marked
+    // read only, the lazy proxy only takes it at the first statement
+    public static DataSource create(DataSource primary,
+                                    List<DataSource> replicas,
+                                    Duration maxLag,
+                                    Duration checkInterval) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, maxLag);
+        routing.startLagChecks(checkInterval);
+        return new ClosingLazyConnectionDataSourceProxy(routing);
+    }
+
+    // reads of one request stay on one server from here until the scope is closed
+    public static void openPinningScope() {
+        PINNED.set(new String[1]);
+    }
+
+    public static void closePinningScope() {
+        PINNED.remove();
+    }
+
+    // seconds behind the primary by replica name, NaN while a replica is unreachable, promoted or
+    // its lag is unknown
+    public Map<String, Double> lagSeconds() {
+        Map<String, Double> lag = new HashMap<>();
+        replicas.forEach(replica -> lag.put(replica.name, replica.lagSeconds));
+        return lag;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        String[] pinned = PINNED.get();
+        if (pinned == null) {
+            return nextAvailableReplica();
+        }
+        if (pinned[0] == null) {
+            pinned[0] = nextAvailableReplica();
+        } else if (!pinned[0].equals(PRIMARY) && !isAvailable(pinned[0])) {
+            pinned[0] = PRIMARY;
+        }
+        return pinned[0];
+    }
+
+    // replicas only get traffic once a check has found them caught up
+    void startLagChecks(Duration interval) {
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // a replica is as far behind as the time since the primary was at the position it has
+    // replayed, so a replica cut off from an idle primary is still current and one cut off from
+    // a busy primary falls behind. Without a primary position no replica counts as caught up
+    void checkLag() {
+        long now = System.nanoTime();
+        readPrimaryPosition(now);
+        for (Replica replica : replicas) {
+            double lagSeconds = Double.NaN;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(REPLICA_POSITION_SQL)) {
+                resultSet.next();
+                boolean inRecovery = resultSet.getBoolean(1);
+                long replayed = resultSet.getLong(2);
+                if (inRecovery && !resultSet.wasNull()) {
+                    lagSeconds = lagSeconds(replayed, now);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not check the lag of {}", replica.name, e);
+            }
+            boolean available = !Double.isNaN(lagSeconds) && lagSeconds * 1000 <= maxLagMillis;
+            if (available != replica.available) {
+                if (available) {
+                    LOGGER.info("{} takes read only transactions, {}s behind the primary", replica.name, lagSeconds);
+                } else {
+                    LOGGER.warn("{} is unreachable, promoted, of unknown lag or more than {}ms behind the primary ({}s), "
+                            + "its reads go to the primary", replica.name, maxLagMillis, lagSeconds);
+                }
+            }
+            replica.lagSeconds = lagSeconds;
+            replica.available = available;
+        }
+    }
+
+    private void readPrimaryPosition(long now) {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(PRIMARY_POSITION_SQL)) {
+            resultSet.next();
+            primaryPositions.addLast(new Position(resultSet.getLong(1), now));
+        } catch (Exception e) {
+            LOGGER.debug("Could not read the wal position of the primary", e);
+            primaryPositions.clear();
+        }
+        while (!primaryPositions.isEmpty() && now - primaryPositions.peekFirst().nanos() > POSITION_HISTORY.toNanos()) {
+            primaryPositions.removeFirst();
+        }
+    }
+
+    // NaN when the replica is behind every position still kept
+    private double lagSeconds(long replayed, long now) {
+        Iterator<Position> newestFirst = primaryPositions.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Position position = newestFirst.next();
+            if (position.lsn() <= replayed) {
+                return (now - position.nanos()) / 1e9;
+            }
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lagChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            close(replica.dataSource);
+        }
+        close(primary);
+    }
+
+    private String nextAvailableReplica() {
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (replica.available) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    private boolean isAvailable(String name) {
+        return replicas.stream()
+                .anyMatch(replica -> replica.name.equals(name) && replica.available);
+    }
+
+    private static void close(DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    // still closeable, so the pools are shut down with the context
+    private static final class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy implements Closeable {
+
+        private ClosingLazyConnectionDataSourceProxy(ReplicaRoutingDataSource routing) {
+            super(routing);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ((ReplicaRoutingDataSource) obtainTargetDataSource()).close();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.kakreak;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// wraps a DataSource so every statement run through it is timed, and the ones over the
+// threshold, or picked by the sample rate, end up in the SlowQueryLog with the row count of
+// updates, and with their bind parameters only when captureParameters is on, as those hold
+// customer data. Every call on a connection or statement goes through a reflective proxy and
+// each execution adds two nanoTime calls, so a statement that is not recorded still pays for
+// those and for holding on to its parameter references, only recorded ones get formatted.
+// Result sets are handed out unwrapped, so reading rows costs nothing extra and queries have no row count
+public final class SlowQueryDataSource {
+
+    // a batch of thousands of rows keeps only the parameters of its first few
+    private static final int MAX_BATCH_PARAMETERS = 10;
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private SlowQueryDataSource() {
+    }
+
+    public static DataSource wrap(DataSource dataSource,
+                                  SlowQueryLog log,
+                                  Duration threshold,
+                                  double sampleRate,
+                                  boolean captureParameters) {
+        Settings settings = new Settings(log, threshold.toNanos(), sampleRate, captureParameters);
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(dataSource, method, args);
+            if (result instanceof Connection connection) {
+                return proxy(Connection.class, connection, new ConnectionHandler(connection, settings));
+            }
+            return result;
+        };
+        // still closeable, so the pool is shut down with the context
+        if (dataSource instanceof Closeable) {
+            return proxy(DataSource.class, dataSource, handler, Closeable.class);
+        }
+        return proxy(DataSource.class, dataSource, handler);
+    }
+
+    private record Settings(SlowQueryLog log, long thresholdNanos, double sampleRate, boolean captureParameters) {
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Settings settings;
+
+        private ConnectionHandler(Connection connection, Settings settings) {
+            this.connection = connection;
+            this.settings = settings;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SlowQueryDataSource.invoke(connection, method, args);
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, statement,
+                        new StatementHandler(statement, (Connection) proxy, (String) args[0], settings));
+            }
+            if (result instanceof PreparedStatement statement) {
+                // prepareStatement always passes the sql first
+                return proxy(PreparedStatement.class, statement,
+                        new StatementHandler(statement, (Connection) proxy, (String) args[0], settings));
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, statement, new StatementHandler(statement, (Connection) proxy, null, settings));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        // handed out in place of the driver's, so statements made from it are timed as well
+        private final Connection connection;
+        private final String sql;
+        private final Settings settings;
+        private Object[] parameters = new Object[0];
+        private int parameterCount;
+        private final List<Object> batch = new ArrayList<>();
+        private int batchSize;
+
+        private StatementHandler(Statement statement, Connection connection, String sql, Settings settings) {
+            this.statement = statement;
+            this.connection = connection;
+            this.sql = sql;
+            this.settings = settings;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && method.getDeclaringClass() == PreparedStatement.class) {
+                // setNull passes the sql type where the others pass the value
+                bind((int) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("addBatch")) {
+                addBatch(args);
+            } else if (name.equals("clearParameters")) {
+                Arrays.fill(parameters, null);
+                parameterCount = 0;
+            } else if (name.equals("clearBatch")) {
+                clearBatch();
+            } else if (name.equals("getConnection")) {
+                return connection;
+            }
+            return SlowQueryDataSource.invoke(statement, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        private void addBatch(Object[] args) {
+            if (batchSize++ < MAX_BATCH_PARAMETERS) {
+                // a plain statement batches whole sql strings instead of parameters
+                batch.add(args == null ? Arrays.copyOf(parameters, parameterCount) : args[0]);
+            }
+        }
+
+        private void clearBatch() {
+            batch.clear();
+            batchSize = 0;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = SlowQueryDataSource.invoke(statement, method, args);
+            } catch (Throwable e) {
+                long elapsed = System.nanoTime() - start;
+                Execution execution = select(elapsed, args);
+                if (execution != null) {
+                    execution.error = e.getMessage();
+                    execution.finish(null);
+                }
+                clearBatch();
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            Execution execution = select(elapsed, args);
+            if (execution != null) {
+                execution.finish(rows(result));
+            }
+            clearBatch();
+            return result;
+        }
+
+        // the only work done for a statement that is neither slow nor sampled is the comparison
+        private Execution select(long elapsed, Object[] args) {
+            boolean slow = elapsed >= settings.thresholdNanos();
+            boolean sampled = !slow
+                    && settings.sampleRate() > 0
+                    && ThreadLocalRandom.current().nextDouble() < settings.sampleRate();
+            if (!slow && !sampled) {
+                return null;
+            }
+            String executed = args != null && args.length > 0 && args[0] instanceof String query ? query : sql;
+            List<List<String>> captured = settings.captureParameters() ? capturedParameters() : List.of();
+            return new Execution(this, executed, captured, elapsed, sampled);
+        }
+
+        private List<List<String>> capturedParameters() {
+            List<List<String>> captured = new ArrayList<>();
+            if (batchSize == 0) {
+                if (parameterCount > 0) {
+                    captured.add(render(Arrays.copyOf(parameters, parameterCount)));
+                }
+                return captured;
+            }
+            for (Object entry : batch) {
+                captured.add(entry instanceof Object[] values ? render(values) : List.of(String.valueOf(entry)));
+            }
+            if (batchSize > batch.size()) {
+                captured.add(List.of("... %d more".formatted(batchSize - batch.size())));
+            }
+            return captured;
+        }
+
+        private Long rows(Object result) {
+            if (result instanceof Number count) {
+                return count.longValue();
+            }
+            if (result instanceof int[] counts) {
+                return Arrays.stream(counts).filter(count -> count > 0).asLongStream().sum();
+            }
+            if (result instanceof long[] counts) {
+                return Arrays.stream(counts).filter(count -> count > 0).sum();
+            }
+            // execute() tells whether there is a result set, the row count is the update count if not
+            if (Boolean.FALSE.equals(result)) {
+                try {
+                    return (long) statement.getUpdateCount();
+                } catch (Exception e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Execution {
+
+        private final StatementHandler statement;
+        private final Instant executedAt;
+        private final String sql;
+        private final List<List<String>> parameters;
+        private final long elapsed;
+        private final boolean sampled;
+        private String error;
+
+        private Execution(StatementHandler statement,
+                          String sql,
+                          List<List<String>> parameters,
+                          long elapsed,
+                          boolean sampled) {
+            this.statement = statement;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsed = elapsed;
+            this.sampled = sampled;
+            this.executedAt = Instant.now().minusNanos(elapsed);
+        }
+
+        private void finish(Long rows) {
+            statement.settings.log().add(new SlowQueryLog.SlowQuery(
+                    executedAt,
+                    sql,
+                    parameters,
+                    elapsed / 1_000_000.0,
+                    rows,
+                    sampled,
+                    error
+            ));
+        }
+    }
+
+    private static List<String> render(Object[] values) {
+        List<String> rendered = new ArrayList<>(values.length);
+        for (Object value : values) {
+            rendered.add(render(value));
+        }
+        return rendered;
+    }
+
+    private static String render(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String rendered = switch (value) {
+            case byte[] bytes -> "<%d bytes>".formatted(bytes.length);
+            case Object[] array -> Arrays.deepToString(array);
+            default -> String.valueOf(value);
+        };
+        return rendered.length() > MAX_PARAMETER_LENGTH
+                ? rendered.substring(0, MAX_PARAMETER_LENGTH) + "..."
+                : rendered;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler, Class<?>... more) {
+        Class<?>[] types = new Class<?>[more.length + 1];
+        types[0] = type;
+        System.arraycopy(more, 0, types, 1, more.length);
+        return (T) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), types,
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "SlowQuery[" + target + "]";
+                    default -> handler.invoke(proxy, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
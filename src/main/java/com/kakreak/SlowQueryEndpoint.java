@@ -0,0 +1,50 @@
+package com.kakreak;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+// GET /actuator/slowqueries lists the captured statements newest first, it is not exposed over http by default
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    public record SlowQueries(Duration threshold,
+                              double sampleRate,
+                              boolean parametersCaptured,
+                              int capacity,
+                              long recorded,
+                              List<SlowQueryLog.SlowQuery> queries) {
+    }
+
+    private final SlowQueryLog slowQueryLog;
+    private final Duration threshold;
+    private final double sampleRate;
+    private final boolean parametersCaptured;
+
+    public SlowQueryEndpoint(SlowQueryLog slowQueryLog,
+                             @Value("${customer.slow-queries.threshold:100ms}") Duration threshold,
+                             @Value("${customer.slow-queries.sample-rate:0}") double sampleRate,
+                             @Value("${customer.slow-queries.capture-parameters:false}") boolean parametersCaptured) {
+        this.slowQueryLog = slowQueryLog;
+        this.threshold = threshold;
+        this.sampleRate = sampleRate;
+        this.parametersCaptured = parametersCaptured;
+    }
+
+    @ReadOperation
+    public SlowQueries slowQueries() {
+        return new SlowQueries(
+                threshold,
+                sampleRate,
+                parametersCaptured,
+                slowQueryLog.capacity(),
+                slowQueryLog.recorded(),
+                slowQueryLog.recent()
+        );
+    }
+}
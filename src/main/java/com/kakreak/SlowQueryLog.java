@@ -0,0 +1,57 @@
+package com.kakreak;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// the most recent slow or sampled statements, once full each new one overwrites the oldest
+public class SlowQueryLog {
+
+    public record SlowQuery(Instant executedAt,
+                            String sql,
+                            List<List<String>> parameters,
+                            double durationMs,
+                            Long rows,
+                            boolean sampled,
+                            String error) {
+    }
+
+    private final AtomicReferenceArray<SlowQuery> entries;
+    private final AtomicLong recorded = new AtomicLong();
+
+    public SlowQueryLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+        }
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    public void add(SlowQuery slowQuery) {
+        long index = recorded.getAndIncrement();
+        entries.set((int) (index % entries.length()), slowQuery);
+    }
+
+    // newest first
+    public List<SlowQuery> recent() {
+        long last = recorded.get();
+        List<SlowQuery> recent = new ArrayList<>();
+        for (long index = last - 1; index >= Math.max(0, last - entries.length()); index--) {
+            SlowQuery slowQuery = entries.get((int) (index % entries.length()));
+            if (slowQuery != null) {
+                recent.add(slowQuery);
+            }
+        }
+        return recent;
+    }
+
+    // every statement added since start up, including those already overwritten
+    public long recorded() {
+        return recorded.get();
+    }
+
+    public int capacity() {
+        return entries.length();
+    }
+}
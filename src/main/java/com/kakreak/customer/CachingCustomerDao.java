@@ -0,0 +1,221 @@
+package com.kakreak.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class CachingCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    // loads follow the invalidation of a write, a lagging replica would put the old row back
+    private final TransactionOperations primaryReads;
+    private final Cache<Long, Customer> customers;
+    // the row and its version as read together, so an etag always matches the body it labels
+    private final Cache<Long, VersionedCustomer> versionedCustomers;
+    // ids looked up without a match, kept apart so an insert can drop them all
+    private final Cache<Long, Boolean> missingCustomers;
+
+    public CachingCustomerDao(CustomerDao delegate,
+                              TransactionOperations primaryReads,
+                              long maximumSize,
+                              Duration ttl,
+                              Duration missingTtl,
+                              MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.primaryReads = primaryReads;
+        this.customers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.versionedCustomers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.missingCustomers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(missingTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, customers, "customers");
+        CaffeineCacheMetrics.monitor(meterRegistry, versionedCustomers, "customers.versioned");
+        CaffeineCacheMetrics.monitor(meterRegistry, missingCustomers, "customers.missing");
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return delegate.selectCustomers(afterId, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return delegate.selectCustomers(query);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (missingCustomers.getIfPresent(id) != null) {
+            return Optional.empty();
+        }
+        // a null from the loader is not stored, the miss is remembered below
+        Customer customer = customers.get(id, key -> primaryReads.execute(status -> delegate.selectCustomerById(key).orElse(null)));
+        if (customer == null) {
+            missingCustomers.put(id, Boolean.TRUE);
+        }
+        return Optional.ofNullable(customer);
+    }
+
+    // only the ids neither cached nor known to be missing go to the delegate, in one call
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        List<Long> candidates = ids.stream()
+                .filter(id -> missingCustomers.getIfPresent(id) == null)
+                .toList();
+        Map<Long, Customer> found = customers.getAll(candidates, missing ->
+                primaryReads.execute(status -> delegate.selectCustomersByIds(List.copyOf(missing))).stream()
+                        .collect(Collectors.toMap(Customer::getId, Function.identity())));
+        candidates.stream()
+                .filter(id -> !found.containsKey(id))
+                .forEach(id -> missingCustomers.put(id, Boolean.TRUE));
+        return List.copyOf(found.values());
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        try {
+            delegate.insertCustomer(customer);
+        } finally {
+            missingCustomers.invalidateAll();
+        }
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        try {
+            return delegate.insertCustomerIfEmailAbsent(customer);
+        } finally {
+            missingCustomers.invalidateAll();
+        }
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        try {
+            delegate.insertCustomers(customers);
+        } finally {
+            missingCustomers.invalidateAll();
+        }
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return delegate.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        try {
+            return delegate.deleteCustomer(id);
+        } finally {
+            customers.invalidate(id);
+            versionedCustomers.invalidate(id);
+        }
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        try {
+            return delegate.deleteCustomersByIds(ids);
+        } finally {
+            customers.invalidateAll(ids);
+            versionedCustomers.invalidateAll(ids);
+        }
+    }
+
+    @Override
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        return delegate.selectAgeStatistics(bucketWidth);
+    }
+
+    @Override
+    public boolean exitsPersonWithId(Long id) {
+        if (customers.asMap().containsKey(id)) {
+            return true;
+        }
+        if (missingCustomers.asMap().containsKey(id)) {
+            return false;
+        }
+        return delegate.exitsPersonWithId(id);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            customers.invalidate(update.getId());
+            versionedCustomers.invalidate(update.getId());
+        }
+    }
+
+    // evicted with the plain row, the version is only ever handed out with the row it was read with
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long id) {
+        if (missingCustomers.getIfPresent(id) != null) {
+            return Optional.empty();
+        }
+        VersionedCustomer customer = versionedCustomers.get(id, key ->
+                primaryReads.execute(status -> delegate.selectVersionedCustomerById(key).orElse(null)));
+        if (customer == null) {
+            missingCustomers.put(id, Boolean.TRUE);
+        }
+        return Optional.ofNullable(customer);
+    }
+
+    // the reactive api writes through r2dbc, around this dao
+    @EventListener
+    public void onCustomersChanged(CustomersChangedEvent event) {
+        customers.invalidateAll(event.customerIds());
+        versionedCustomers.invalidateAll(event.customerIds());
+        missingCustomers.invalidateAll();
+    }
+
+    @Override
+    public long selectCustomerTableVersion() {
+        return delegate.selectCustomerTableVersion();
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        return delegate.searchCustomers(query, limit);
+    }
+}
@@ -16,17 +16,18 @@ import java.util.Objects;
 )
 public class Customer {
 
+    // blocks of 50 from the sequence behind the column default, see V3
     @Id
     @SequenceGenerator(
             name = "customer_id_seq",
             sequenceName = "customer_id_seq",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "customer_id_seq"
     )
-    private Integer id;
+    private Long id;
 
     @Column(
             nullable = false
@@ -43,7 +44,7 @@ public class Customer {
     )
     private Integer age;
 
-    public Customer(Integer id, String name, String email, Integer age) {
+    public Customer(Long id, String name, String email, Integer age) {
         this.id = id;
         this.name = name;
         this.email = email;
@@ -59,11 +60,11 @@ public class Customer {
         this.age = age;
     }
 
-    public Integer getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(Integer id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
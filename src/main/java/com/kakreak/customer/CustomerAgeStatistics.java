@@ -0,0 +1,74 @@
+package com.kakreak.customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public record CustomerAgeStatistics(
+        long count,
+        Integer min,
+        Integer max,
+        Double mean,
+        Double p50,
+        Double p90,
+        Double p95,
+        Double p99,
+        List<AgeBucket> histogram
+) {
+
+    // ages in [from, to)
+    public record AgeBucket(
+            int from,
+            int to,
+            long count
+    ) {
+    }
+
+    // the in-memory daos hand over a primitive age column, it is sorted in place
+    static CustomerAgeStatistics of(int[] ages, int bucketWidth) {
+        if (ages.length == 0) {
+            return new CustomerAgeStatistics(0, null, null, null, null, null, null, null, List.of());
+        }
+        Arrays.sort(ages);
+
+        long sum = 0;
+        List<AgeBucket> histogram = new ArrayList<>();
+        int bucket = bucketOf(ages[0], bucketWidth);
+        long bucketCount = 0;
+        for (int age : ages) {
+            sum += age;
+            if (bucketOf(age, bucketWidth) != bucket) {
+                histogram.add(new AgeBucket(bucket, bucket + bucketWidth, bucketCount));
+                bucket = bucketOf(age, bucketWidth);
+                bucketCount = 0;
+            }
+            bucketCount++;
+        }
+        histogram.add(new AgeBucket(bucket, bucket + bucketWidth, bucketCount));
+
+        return new CustomerAgeStatistics(
+                ages.length,
+                ages[0],
+                ages[ages.length - 1],
+                (double) sum / ages.length,
+                percentile(ages, 0.5),
+                percentile(ages, 0.9),
+                percentile(ages, 0.95),
+                percentile(ages, 0.99),
+                histogram
+        );
+    }
+
+    // same truncating division as age / width * width in postgres
+    private static int bucketOf(int age, int bucketWidth) {
+        return age / bucketWidth * bucketWidth;
+    }
+
+    // linear interpolation between the closest ranks, like percentile_cont
+    private static double percentile(int[] sortedAges, double fraction) {
+        double position = fraction * (sortedAges.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = (int) Math.ceil(position);
+        return sortedAges[lower] + (position - lower) * (sortedAges[upper] - sortedAges[lower]);
+    }
+}
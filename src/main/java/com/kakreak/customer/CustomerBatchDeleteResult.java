@@ -0,0 +1,9 @@
+package com.kakreak.customer;
+
+import java.util.List;
+
+public record CustomerBatchDeleteResult(
+        List<Long> deleted,
+        List<Long> notFound
+) {
+}
@@ -0,0 +1,15 @@
+package com.kakreak.customer;
+
+public record CustomerBatchRegistrationResult(
+        int index,
+        String email,
+        Status status
+) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE_EMAIL,
+        DUPLICATE_IN_BATCH,
+        INVALID
+    }
+}
@@ -1,27 +1,139 @@
 package com.kakreak.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("api/v1/customers/")
 public class CustomerController {
 
+    // lifts the async timeout of the one request it is registered on, right before it goes async
+    private static final CallableProcessingInterceptor NO_ASYNC_TIMEOUT = new CallableProcessingInterceptor() {
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            if (request instanceof AsyncWebRequest asyncWebRequest) {
+                asyncWebRequest.setTimeout(-1L);
+            }
+        }
+    };
+
     private final CustomerService customerService;
+    private final CustomerListResponseCache customerListResponseCache;
+    private final ObjectWriter customerWriter;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              CustomerListResponseCache customerListResponseCache,
+                              ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.customerListResponseCache = customerListResponseCache;
+        this.customerWriter = objectMapper.writerFor(Customer.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
+    // the version is read before the rows, a change in between costs the client one more
+    // download but never leaves it holding old rows under a new ETag
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public void getCustomers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        customerListResponseCache.write(
+                "all",
+                customerService.getCustomerTableVersion(),
+                customerService::getAllCustomers,
+                request,
+                response
+        );
+    }
+
+    @GetMapping(params = "limit")
+    public void getCustomerPage(@RequestParam(value = "after", required = false) Long after,
+                                @RequestParam("limit") int limit,
+                                @RequestParam(value = "minAge", required = false) Integer minAge,
+                                @RequestParam(value = "maxAge", required = false) Integer maxAge,
+                                @RequestParam(value = "emailDomain", required = false) String emailDomain,
+                                @RequestParam(value = "sort", defaultValue = "id") String sort,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        // validated first, an invalid request gets its 400 even when it carries a matching ETag
+        CustomerQuery query = customerService.getCustomerQuery(after, limit, minAge, maxAge, emailDomain, sort);
+        customerListResponseCache.write(
+                query.toString(),
+                customerService.getCustomerTableVersion(),
+                () -> customerService.getCustomerPage(query),
+                request,
+                response
+        );
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers(NativeWebRequest request) {
+        // an export takes as long as the client needs to read it, so only it runs without the
+        // spring.mvc.async.request-timeout every other async request keeps
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(NO_ASYNC_TIMEOUT, NO_ASYNC_TIMEOUT);
+        // rows are written as the cursor yields them; a slow client blocks the
+        // write, which in turn stops the next fetch from the database
+        StreamingResponseBody body = outputStream -> customerService.exportCustomers(customer -> {
+            try {
+                customerWriter.writeValue(outputStream, customer);
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("search")
+    public List<Customer> searchCustomers(@RequestParam("q") String query,
+                                          @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return customerService.searchCustomers(query, limit);
+    }
+
+    @GetMapping("lookup")
+    public CustomerLookupResult lookupCustomers(@RequestParam("ids") List<Long> customerIds) {
+        return customerService.getCustomersByIds(customerIds);
+    }
+
+    @GetMapping("email-availability")
+    public CustomerEmailAvailability getEmailAvailability(@RequestParam("email") String email) {
+        return new CustomerEmailAvailability(email, customerService.isEmailAvailable(email));
+    }
+
+    @GetMapping("statistics/age")
+    public CustomerAgeStatistics getAgeStatistics(@RequestParam(value = "bucketWidth", defaultValue = "10") int bucketWidth) {
+        return customerService.getAgeStatistics(bucketWidth);
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(@PathVariable("customerId") Integer customerId) {
-        return customerService.getCustomerById(customerId);
+    public ResponseEntity<Customer> getCustomer(@PathVariable("customerId") Long customerId,
+                                                WebRequest request) {
+        // the ETag and the body come from the same read, cached or not
+        VersionedCustomer customer = customerService.getVersionedCustomerById(customerId);
+        String eTag = eTag(customer.version());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(customer.customer());
     }
 
     @PostMapping
@@ -29,14 +141,39 @@ public class CustomerController {
         customerService.addCustomer(request);
     }
 
+    @PostMapping("batch")
+    public List<CustomerBatchRegistrationResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
+    }
+
+    @PostMapping(value = "import", consumes = "text/csv")
+    public CustomerImportResult importCustomersFromCsv(InputStream csv) {
+        return customerService.importCustomersFromCsv(csv);
+    }
+
+    @PostMapping(value = "import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public CustomerImportResult importCustomersFromNdjson(InputStream ndjson) {
+        return customerService.importCustomersFromNdjson(ndjson);
+    }
+
     @DeleteMapping("{customerId}")
-    public void deleteCustomer(@PathVariable("customerId") Integer customerId) {
+    public void deleteCustomer(@PathVariable("customerId") Long customerId) {
         customerService.deleteCustomerById(customerId);
     }
 
+    @PostMapping("batch/delete")
+    public CustomerBatchDeleteResult deleteCustomers(@RequestBody List<Long> customerIds) {
+        return customerService.deleteCustomersByIds(customerIds);
+    }
+
     @PutMapping("{customerId}")
-    public void updateCustomer(@PathVariable("customerId") Integer customerId,
+    public void updateCustomer(@PathVariable("customerId") Long customerId,
                                @RequestBody CustomerUpdateRequest request) {
         customerService.updateCustomerById(customerId, request);
     }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
 }
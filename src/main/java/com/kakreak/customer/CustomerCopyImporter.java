@@ -0,0 +1,153 @@
+package com.kakreak.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.kakreak.exception.RequestValidationException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+@Repository
+public class CustomerCopyImporter {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING_TABLE = """
+            CREATE TEMP TABLE customer_import (
+                name TEXT,
+                email TEXT,
+                age TEXT
+            ) ON COMMIT DROP
+            """;
+
+    private static final String COPY_CSV = """
+            COPY customer_import(name, email, age)
+            FROM STDIN WITH (FORMAT csv, HEADER true)
+            """;
+
+    private static final String COPY_ROWS = """
+            COPY customer_import(name, email, age)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+
+    // rows with a missing column or a non numeric age are left behind and
+    // counted as rejected, as are emails already taken or repeated in the file.
+    // the emails that made it in come back, the caller keeps the email filter current with them
+    private static final String MERGE_STAGING_TABLE = """
+            INSERT INTO customer(name, email, age)
+            SELECT DISTINCT ON (email) name, email, age::INTEGER
+            FROM customer_import
+            WHERE name IS NOT NULL
+              AND email IS NOT NULL
+              AND age ~ '^[0-9]{1,9}$'
+            ORDER BY email
+            ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+            RETURNING email
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectReader registrationReader;
+
+    public CustomerCopyImporter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.registrationReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+    }
+
+    @Transactional
+    public CustomerImportResult importCsv(InputStream csv, Consumer<String> insertedEmails) {
+        return importRows(copyManager -> copyManager.copyIn(COPY_CSV, csv, COPY_BUFFER_SIZE), insertedEmails);
+    }
+
+    @Transactional
+    public CustomerImportResult importNdjson(InputStream ndjson, Consumer<String> insertedEmails) {
+        return importRows(copyManager -> {
+            CopyIn copyIn = copyManager.copyIn(COPY_ROWS);
+            try (MappingIterator<CustomerRegistrationRequest> requests = registrationReader.readValues(ndjson)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        new PGCopyOutputStream(copyIn, COPY_BUFFER_SIZE), StandardCharsets.UTF_8));
+                while (requests.hasNextValue()) {
+                    CustomerRegistrationRequest request = requests.nextValue();
+                    // depending on the mapper a null line comes back as a null record, it has
+                    // no columns at all, like a csv row of the wrong width
+                    if (request == null) {
+                        throw new RequestValidationException("Malformed import: null record on line "
+                                + requests.getCurrentLocation().getLineNr());
+                    }
+                    writer.write(csvField(request.name()));
+                    writer.write(',');
+                    writer.write(csvField(request.email()));
+                    writer.write(',');
+                    writer.write(request.age() == null ? "" : request.age().toString());
+                    writer.write('\n');
+                }
+                writer.flush();
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }, insertedEmails);
+    }
+
+    private CustomerImportResult importRows(CopyOperation copyOperation, Consumer<String> insertedEmails) {
+        jdbcTemplate.execute(CREATE_STAGING_TABLE);
+
+        Connection connection = DataSourceUtils.getConnection(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        long received;
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            received = copyOperation.copy(copyManager);
+        } catch (SQLException e) {
+            // class 22 covers malformed input such as a wrong number of columns
+            if (e.getSQLState() != null && e.getSQLState().startsWith("22")) {
+                throw new RequestValidationException("Malformed import: " + e.getMessage());
+            }
+            throw Objects.requireNonNull(jdbcTemplate.getExceptionTranslator().translate("COPY", null, e));
+        } catch (JsonProcessingException e) {
+            throw new RequestValidationException("Malformed import: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, jdbcTemplate.getDataSource());
+        }
+
+        long[] inserted = {0};
+        jdbcTemplate.query(MERGE_STAGING_TABLE, rs -> {
+            insertedEmails.accept(rs.getString("email"));
+            inserted[0]++;
+        });
+        return new CustomerImportResult(received, inserted[0], received - inserted[0]);
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    @FunctionalInterface
+    private interface CopyOperation {
+        long copy(CopyManager copyManager) throws SQLException, IOException;
+    }
+}
@@ -1,14 +1,33 @@
 package com.kakreak.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
-    Optional<Customer> selectCustomerById(Integer id);
+    List<Customer> selectCustomers(Long afterId, int limit);
+    List<Customer> selectCustomers(CustomerQuery query);
+    void forEachCustomer(Consumer<Customer> action);
+    Optional<Customer> selectCustomerById(Long id);
+    // in no particular order, ids without a customer are left out
+    List<Customer> selectCustomersByIds(Collection<Long> ids);
     void insertCustomer(Customer customer);
+    Optional<Long> insertCustomerIfEmailAbsent(Customer customer);
+    void insertCustomers(List<Customer> customers);
     boolean existsPersonWithEmail(String email);
-    void deleteCustomer(Integer id);
-    boolean exitsPersonWithId(Integer id);
-    void updateCustomer(Customer customer);
+    Set<String> selectExistingEmails(Collection<String> emails);
+    boolean deleteCustomer(Long id);
+    List<Long> deleteCustomersByIds(Collection<Long> ids);
+    boolean exitsPersonWithId(Long id);
+    CustomerUpdateResult updateCustomer(Customer update);
+    CustomerAgeStatistics selectAgeStatistics(int bucketWidth);
+    // the row and its version from a single read, so a version never labels another state of the row
+    Optional<VersionedCustomer> selectVersionedCustomerById(Long id);
+    // changes whenever any customer is inserted, updated or deleted
+    long selectCustomerTableVersion();
+    // prefix matches on name or email first, then substring matches, then similar ones
+    List<Customer> searchCustomers(String query, int limit);
 }
@@ -0,0 +1,43 @@
+package com.kakreak.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class CustomerDataAccessConfig {
+
+    @Bean
+    public CustomerDao customerDao(BeanFactory beanFactory,
+                                   MeterRegistry meterRegistry,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${customer.dao:jpa}") String implementation,
+                                   @Value("${customer.cache.enabled:false}") boolean cacheEnabled,
+                                   @Value("${customer.cache.maximum-size:100000}") long maximumSize,
+                                   @Value("${customer.cache.ttl:10m}") Duration ttl,
+                                   @Value("${customer.cache.missing-ttl:30s}") Duration missingTtl) {
+        // timed inside the cache, so the timings are those of the implementation itself
+        CustomerDao customerDao = new TimedCustomerDao(
+                beanFactory.getBean(implementation, CustomerDao.class),
+                implementation,
+                meterRegistry
+        );
+        if (!cacheEnabled) {
+            return customerDao;
+        }
+        return new CachingCustomerDao(
+                customerDao,
+                new TransactionTemplate(transactionManager),
+                maximumSize,
+                ttl,
+                missingTtl,
+                meterRegistry
+        );
+    }
+}
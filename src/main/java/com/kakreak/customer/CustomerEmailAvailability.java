@@ -0,0 +1,10 @@
+package com.kakreak.customer;
+
+// advisory only: available is not checked against the table when this instance's email filter
+// has never seen the email, so one registered through another instance or straight in the
+// database can show as available. Registering it still fails on the email constraint
+public record CustomerEmailAvailability(
+        String email,
+        boolean available
+) {
+}
@@ -0,0 +1,85 @@
+package com.kakreak.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class CustomerEmailFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerEmailFilter.class);
+
+    private final CustomerDao customerDao;
+    // read write, so the table is read on the primary, a replica may not hold the emails just written yet
+    private final TransactionTemplate primaryTransaction;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // null until the first build completes, every email is a possible hit meanwhile
+    private volatile BloomFilter filter;
+    // receives the emails written while a rebuild is streaming the table
+    private volatile BloomFilter building;
+
+    public CustomerEmailFilter(@Qualifier("customerDao") CustomerDao customerDao,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${customer.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${customer.email-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.customerDao = customerDao;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build the customer email filter, every email is checked against the database", e);
+        }
+    }
+
+    public void rebuild() {
+        // a lock rather than synchronized, a virtual thread streaming the table must not pin its carrier
+        rebuildLock.lock();
+        try {
+            BloomFilter next = new BloomFilter(expectedInsertions, falsePositiveProbability);
+            building = next;
+            try {
+                primaryTransaction.executeWithoutResult(status ->
+                        customerDao.forEachCustomer(customer -> next.put(customer.getEmail())));
+                filter = next;
+            } finally {
+                building = null;
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public boolean mightContain(String email) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(email);
+    }
+
+    public void put(String email) {
+        // read building before filter, a rebuild publishes filter before clearing building
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(email);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.kakreak.customer;
+
+public record CustomerImportResult(
+        long received,
+        long inserted,
+        long rejected
+) {
+}
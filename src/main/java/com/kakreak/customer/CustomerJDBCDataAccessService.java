@@ -1,23 +1,44 @@
 package com.kakreak.customer;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+// reads are marked read only without opening a transaction of their own, so a replica can serve them
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao {
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    // for the statements shared with the other daos in CustomerSql
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
 
     public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.customerRowMapper = customerRowMapper;
     }
 
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Customer> selectAllCustomers() {
         var sql = """
                 SELECT id, name, email, age
@@ -27,7 +48,77 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
     }
 
     @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, afterId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (query.sort() == CustomerSort.ID) {
+            conditions.add("id > ?");
+            args.add(query.afterId());
+        }
+        if (query.minAge() != null) {
+            conditions.add("age >= ?");
+            args.add(query.minAge());
+        }
+        if (query.maxAge() != null) {
+            conditions.add("age <= ?");
+            args.add(query.maxAge());
+        }
+        if (query.emailDomain() != null) {
+            // served by the trigram index on email
+            conditions.add("email ILIKE ?");
+            args.add("%@" + CustomerSql.escapeLike(query.emailDomain()));
+        }
+        args.add(query.limit());
+
+        // age ranges in age order are index only scans of (age, id), forwards or backwards
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                %s
+                ORDER BY %s
+                LIMIT ?
+                """.formatted(
+                conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions),
+                orderBy(query.sort()));
+        return jdbcTemplate.query(sql, customerRowMapper, args.toArray());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachCustomer(Consumer<Customer> action) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                """;
+        // PostgreSQL only honours the fetch size inside a transaction,
+        // otherwise the driver buffers the whole result set
+        PreparedStatementCreator statementCreator = connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        };
+        try (Stream<Customer> customers = jdbcTemplate.queryForStream(statementCreator, customerRowMapper)) {
+            customers.forEach(action);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Optional<Customer> selectCustomerById(Long id) {
         var sql = """
                 SELECT id, name, email, age
                 FROM customer
@@ -38,20 +129,62 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
                 .findFirst();
     }
 
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, (Object) ids.toArray(Long[]::new));
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         var sql = """
                 INSERT INTO customer(name, email, age)
                 VALUES (?, ?, ?)
                 """;
-        int result = jdbcTemplate.update(sql,
+        jdbcTemplate.update(sql,
                 customer.getName(),
                 customer.getEmail(),
                 customer.getAge()
         );
-        System.out.println("jdbcTemplate.update = " + result);
     }
 
+    @Override
+    public Optional<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return jdbcTemplate.queryForList(sql, Long.class,
+                        customer.getName(),
+                        customer.getEmail(),
+                        customer.getAge()
+                )
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    @Transactional
+    public void insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (?, ?, ?)
+                """;
+        jdbcTemplate.batchUpdate(sql, customers, INSERT_BATCH_SIZE, (statement, customer) -> {
+            statement.setString(1, customer.getName());
+            statement.setString(2, customer.getEmail());
+            statement.setInt(3, customer.getAge());
+        });
+    }
+
+    // asked right before a signup, so it reads the primary
     @Override
     public boolean existsPersonWithEmail(String email) {
         var sql = """
@@ -63,19 +196,41 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
         return count != null && count > 0;
     }
 
+    // the check before an insert, so it reads the primary
     @Override
-    public void deleteCustomer(Integer id) {
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(?)
+                """;
+        return new HashSet<>(jdbcTemplate.queryForList(sql, String.class, (Object) emails.toArray(String[]::new)));
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
         var sql = """
                 DELETE
                 FROM customer
                 WHERE id = ?
                 """;
-        int result = jdbcTemplate.update(sql, id);
-        System.out.println("deleteCustomerById result = " + result);
+        return jdbcTemplate.update(sql, id) > 0;
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ANY(?)
+                RETURNING id
+                """;
+        return jdbcTemplate.queryForList(sql, Long.class, (Object) ids.toArray(Long[]::new));
     }
 
     @Override
-    public boolean exitsPersonWithId(Integer id) {
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public boolean exitsPersonWithId(Long id) {
         var sql = """
                 SELECT count(id)
                 FROM customer
@@ -86,33 +241,83 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        if (update.getName() != null) {
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getName(),
-                    update.getId()
-            );
-            System.out.println("Update customer name result = " + result);
-        }
-        if (update.getEmail() != null) {
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getEmail(),
-                    update.getId()
-            );
-            System.out.println("Update customer email result = " + result);
-        }
-        if (update.getAge() != null) {
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getAge(),
-                    update.getId()
-            );
-            System.out.println("Update customer age result = " + result);
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        Map<String, Object> columns = CustomerSql.changedColumns(update);
+        if (columns.isEmpty()) {
+            return exitsPersonWithId(update.getId())
+                    ? CustomerUpdateResult.UNCHANGED
+                    : CustomerUpdateResult.NOT_FOUND;
         }
+
+        Map<String, Object> parameters = new HashMap<>(columns);
+        parameters.put("id", update.getId());
+        var sql = CustomerSql.updateChangedColumnsReportingFound(columns);
+        return namedParameterJdbcTemplate.queryForObject(sql, parameters, (rs, rowNum) -> {
+            if (rs.getBoolean("updated")) {
+                return CustomerUpdateResult.UPDATED;
+            }
+            return rs.getBoolean("found")
+                    ? CustomerUpdateResult.UNCHANGED
+                    : CustomerUpdateResult.NOT_FOUND;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        return namedParameterJdbcTemplate.query(CustomerSql.AGE_STATISTICS, Map.of("bucketWidth", bucketWidth), rs -> {
+            rs.next();
+            long count = rs.getLong("count");
+            Integer min = rs.getObject("min_age", Integer.class);
+            Integer max = rs.getObject("max_age", Integer.class);
+            Double mean = rs.getObject("mean_age", Double.class);
+            Double p50 = rs.getObject("p50", Double.class);
+            Double p90 = rs.getObject("p90", Double.class);
+            Double p95 = rs.getObject("p95", Double.class);
+            Double p99 = rs.getObject("p99", Double.class);
+            List<CustomerAgeStatistics.AgeBucket> histogram = new ArrayList<>();
+            while (rs.next()) {
+                int bucket = rs.getInt("bucket");
+                histogram.add(new CustomerAgeStatistics.AgeBucket(bucket, bucket + bucketWidth, rs.getLong("count")));
+            }
+            return new CustomerAgeStatistics(count, min, max, mean, p50, p90, p95, p99, histogram);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long id) {
+        return namedParameterJdbcTemplate.query(CustomerSql.VERSIONED_BY_ID, Map.of("id", id),
+                        (rs, rowNum) -> new VersionedCustomer(
+                                customerRowMapper.mapRow(rs, rowNum),
+                                rs.getLong("version")
+                        ))
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public long selectCustomerTableVersion() {
+        var sql = """
+                SELECT coalesce(sum(version), 0)::bigint
+                FROM customer_table_version
+                """;
+        Long version = jdbcTemplate.queryForObject(sql, Long.class);
+        return version == null ? 0 : version;
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Customer> searchCustomers(String query, int limit) {
+        return namedParameterJdbcTemplate.query(CustomerSql.SEARCH, CustomerSql.searchParameters(query, limit), customerRowMapper);
+    }
+
+    private static String orderBy(CustomerSort sort) {
+        return switch (sort) {
+            case ID -> "id";
+            case AGE -> "age, id";
+            case AGE_DESC -> "age DESC, id DESC";
+        };
     }
 }
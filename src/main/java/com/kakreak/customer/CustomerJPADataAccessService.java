@@ -1,11 +1,18 @@
 package com.kakreak.customer;
 
-import jakarta.transaction.Transactional;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+// reads run in read only transactions, which go to a replica when there are any
 @Repository("jpa")
 @Transactional
 public class CustomerJPADataAccessService implements CustomerDao{
@@ -17,37 +24,121 @@ public class CustomerJPADataAccessService implements CustomerDao{
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
         return customerRepository.findAll();
     }
 
     @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return customerRepository.selectCustomers(query);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachCustomer(Consumer<Customer> action) {
+        try (Stream<Customer> customers = customerRepository.streamAllCustomers()) {
+            customers.forEach(action);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> selectCustomerById(Long id) {
         return customerRepository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         customerRepository.save(customer);
     }
 
+    @Override
+    public Optional<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        return customerRepository.insertCustomerIfEmailAbsent(
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customerRepository.saveAll(customers);
+    }
+
+    // asked right before a signup, so it reads the primary
     @Override
     public boolean existsPersonWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
     }
 
+    // the check before an insert, so it reads the primary
     @Override
-    public void deleteCustomer(Integer id) {
-        customerRepository.deleteById(id);
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return new HashSet<>(customerRepository.findExistingEmails(emails));
     }
 
     @Override
-    public boolean exitsPersonWithId(Integer id) {
+    public boolean deleteCustomer(Long id) {
+        return customerRepository.deleteCustomerById(id) > 0;
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return customerRepository.deleteCustomersByIds(ids);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        return customerRepository.selectAgeStatistics(bucketWidth);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean exitsPersonWithId(Long id) {
         return customerRepository.existsById(id);
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        if (customerRepository.updateChangedFields(update) > 0) {
+            return CustomerUpdateResult.UPDATED;
+        }
+        return customerRepository.existsById(update.getId())
+                ? CustomerUpdateResult.UNCHANGED
+                : CustomerUpdateResult.NOT_FOUND;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long id) {
+        return customerRepository.findVersionedById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long selectCustomerTableVersion() {
+        return customerRepository.selectTableVersion();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> searchCustomers(String query, int limit) {
+        return customerRepository.searchCustomers(query, limit);
     }
 }
@@ -1,72 +1,260 @@
 package com.kakreak.customer;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDao {
 
-    // db
-    private final List<Customer> customers;
+    // db: stored rows are never mutated, updates replace them together with their version
+    private final ConcurrentHashMap<Long, VersionedCustomer> customersById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> customerIdsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Long> customerIds = new ConcurrentSkipListSet<>();
+    private final AtomicLong lastCustomerId = new AtomicLong();
+    private final AtomicLong lastRowVersion = new AtomicLong();
+    // bumped after every change is visible, so a reader never pairs a version with an older table
+    private final AtomicLong tableVersion = new AtomicLong();
+    private final CustomerTrigramIndex searchIndex = new CustomerTrigramIndex();
 
     {
-        customers = new ArrayList<>();
-        Customer alex = new Customer(
-                1,
+        insertCustomer(new Customer(
                 "Alex",
                 "alex@gmail.com",
                 21
-        );
-        customers.add(alex);
-
-        Customer jamila = new Customer(
-                2,
+        ));
+        insertCustomer(new Customer(
                 "Jamila",
                 "jamila@gmail.com",
                 20
-        );
-        customers.add(jamila);
+        ));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>(customersById.size());
+        forEachCustomer(customers::add);
+        return customers;
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        List<Customer> customers = new ArrayList<>(Math.min(limit, customersById.size()));
+        for (Long id : customerIds.tailSet(afterId, false)) {
+            if (customers.size() == limit) {
+                break;
+            }
+            Customer customer = customer(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
         return customers;
     }
 
     @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(customer -> customer.getId().equals(id))
-                .findFirst();
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        Iterable<Long> ids = query.sort() == CustomerSort.ID
+                ? customerIds.tailSet(query.afterId(), false)
+                : customerIds;
+        Iterable<Customer> customers = () -> StreamSupport.stream(ids.spliterator(), false)
+                .map(this::customer)
+                .filter(Objects::nonNull)
+                .iterator();
+        return query.select(customers);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        for (Long id : customerIds) {
+            Customer customer = customer(id);
+            if (customer != null) {
+                action.accept(customer);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return Optional.ofNullable(customer(id));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .map(this::customer)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        if (insertCustomerIfEmailAbsent(customer).isEmpty()) {
+            throw new DuplicateKeyException("Email " + customer.getEmail() + " already taken");
+        }
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        long id = lastCustomerId.incrementAndGet();
+        // the email index is the unique constraint, whoever claims the email first wins
+        if (customerIdsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return Optional.empty();
+        }
+        store(id, customer);
+        return Optional.of(id);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        List<String> claimedEmails = new ArrayList<>(customers.size());
+        List<Long> ids = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            long id = lastCustomerId.incrementAndGet();
+            if (customerIdsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+                // all or nothing, like the batch insert of the database backed daos
+                for (int i = 0; i < claimedEmails.size(); i++) {
+                    customerIdsByEmail.remove(claimedEmails.get(i), ids.get(i));
+                }
+                throw new DuplicateKeyException("Email " + customer.getEmail() + " already taken");
+            }
+            claimedEmails.add(customer.getEmail());
+            ids.add(id);
+        }
+        for (int i = 0; i < customers.size(); i++) {
+            store(ids.get(i), customers.get(i));
+        }
     }
 
     @Override
     public boolean existsPersonWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return customerIdsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(customerIdsByEmail::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        VersionedCustomer removed = customersById.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        customerIds.remove(id);
+        customerIdsByEmail.remove(removed.customer().getEmail(), id);
+        searchIndex.remove(id, removed.customer());
+        tableVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(this::deleteCustomer)
+                .toList();
+    }
+
+    @Override
+    public boolean exitsPersonWithId(Long id) {
+        return customersById.containsKey(id);
     }
 
     @Override
-    public void deleteCustomer(Integer id) {
-        customers.removeIf(customer -> customer.getId().equals(id));
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        CustomerUpdateResult[] result = {CustomerUpdateResult.NOT_FOUND};
+        // compute runs once under the bin lock, so concurrent updates of one customer are serialised
+        customersById.computeIfPresent(update.getId(), (id, row) -> {
+            Customer customer = row.customer();
+            Customer updated = new Customer(
+                    id,
+                    Objects.requireNonNullElse(update.getName(), customer.getName()),
+                    Objects.requireNonNullElse(update.getEmail(), customer.getEmail()),
+                    Objects.requireNonNullElse(update.getAge(), customer.getAge())
+            );
+            if (updated.equals(customer)) {
+                result[0] = CustomerUpdateResult.UNCHANGED;
+                return row;
+            }
+            if (!updated.getEmail().equals(customer.getEmail())) {
+                Long owner = customerIdsByEmail.putIfAbsent(updated.getEmail(), id);
+                if (owner != null && !owner.equals(id)) {
+                    throw new DuplicateKeyException("Email " + updated.getEmail() + " already taken");
+                }
+                customerIdsByEmail.remove(customer.getEmail(), id);
+            }
+            result[0] = CustomerUpdateResult.UPDATED;
+            searchIndex.update(id, customer, updated);
+            // the version is replaced with the row, a concurrent delete takes both or neither
+            return new VersionedCustomer(updated, lastRowVersion.incrementAndGet());
+        });
+        if (result[0] == CustomerUpdateResult.UPDATED) {
+            tableVersion.incrementAndGet();
+        }
+        return result[0];
     }
 
     @Override
-    public boolean exitsPersonWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(customer -> customer.getId().equals(id));
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        int[] ages = new int[customersById.size()];
+        int size = 0;
+        for (VersionedCustomer row : customersById.values()) {
+            if (size == ages.length) {
+                ages = Arrays.copyOf(ages, size * 2 + 1);
+            }
+            ages[size++] = row.customer().getAge();
+        }
+        return CustomerAgeStatistics.of(Arrays.copyOf(ages, size), bucketWidth);
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customers.add(customer);
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long id) {
+        return Optional.ofNullable(customersById.get(id));
+    }
+
+    @Override
+    public long selectCustomerTableVersion() {
+        return tableVersion.get();
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        return searchIndex.search(query, limit, this::selectCustomerById);
+    }
+
+    private void store(long id, Customer customer) {
+        searchIndex.add(id, customer);
+        customersById.put(id, new VersionedCustomer(
+                new Customer(
+                        id,
+                        customer.getName(),
+                        customer.getEmail(),
+                        customer.getAge()
+                ),
+                lastRowVersion.incrementAndGet()
+        ));
+        customerIds.add(id);
+        tableVersion.incrementAndGet();
+    }
+
+    private Customer customer(Long id) {
+        VersionedCustomer row = customersById.get(id);
+        return row == null ? null : row.customer();
     }
 }
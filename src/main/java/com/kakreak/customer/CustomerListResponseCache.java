@@ -0,0 +1,173 @@
+package com.kakreak.customer;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// the list responses as the bytes that go over the wire, serialized once per query and table
+// version and compressed once per encoding asked for. A write bumps the version, so stale bytes are never served even
+// when the write came from another instance, CustomerService also drops them right away
+@Component
+public class CustomerListResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerListResponseCache.class);
+
+    // fast enough to redo after every write, most of the gain of the top levels at a fraction of the cost
+    private static final int BROTLI_QUALITY = 5;
+
+    enum Encoding {
+        BROTLI("br"),
+        GZIP("gzip"),
+        IDENTITY(null);
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        // brotli over gzip over none, anything the client lists with q=0 is refused. The wildcard
+        // only stands for gzip, and only when gzip is not listed on its own
+        static Encoding negotiate(String acceptEncoding, boolean brotli) {
+            Boolean acceptsBrotli = null;
+            Boolean acceptsGzip = null;
+            boolean acceptsAny = false;
+            if (acceptEncoding != null) {
+                for (String coding : acceptEncoding.split(",")) {
+                    String[] parts = coding.split(";");
+                    String token = parts[0].trim();
+                    boolean accepted = true;
+                    for (int i = 1; i < parts.length; i++) {
+                        accepted &= !parts[i].replace(" ", "").matches("(?i)q=0(\\.0*)?");
+                    }
+                    if (token.equalsIgnoreCase(BROTLI.token)) {
+                        acceptsBrotli = accepted;
+                    } else if (token.equalsIgnoreCase(GZIP.token)) {
+                        acceptsGzip = accepted;
+                    } else if (token.equals("*")) {
+                        acceptsAny = accepted;
+                    }
+                }
+            }
+            if (Boolean.TRUE.equals(acceptsBrotli) && brotli) {
+                return BROTLI;
+            }
+            boolean gzip = acceptsGzip != null ? acceptsGzip : acceptsAny;
+            return gzip ? GZIP : IDENTITY;
+        }
+    }
+
+    // each encoding is its own entry, so a miss only holds up callers of the same bytes
+    private record Key(String query, long version, Encoding encoding) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, byte[]> responses;
+    private final boolean brotli;
+
+    public CustomerListResponseCache(ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${customer.list-cache.maximum-size:64MB}") DataSize maximumSize) {
+        this.objectMapper = objectMapper;
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .<Key, byte[]>weigher((key, bytes) -> bytes.length)
+                .recordStats()
+                .build();
+        this.brotli = Brotli4jLoader.isAvailable();
+        if (!brotli) {
+            LOGGER.info("Brotli is not available, customer lists are served with gzip at best: {}",
+                    String.valueOf(Brotli4jLoader.getUnavailabilityCause()));
+        }
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "customers.list");
+    }
+
+    // answers 304 when the client already holds this version, otherwise writes the cached bytes
+    // in the best encoding it accepts, the body is only produced on a miss
+    public void write(String query,
+                      long version,
+                      Supplier<?> body,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        Encoding encoding = Encoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING), brotli);
+        // a strong etag names exactly one byte sequence, so each encoding gets its own
+        String eTag = encoding == Encoding.IDENTITY
+                ? "\"" + version + "\""
+                : "\"" + version + "-" + encoding.token + "\"";
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (new ServletWebRequest(request, response).checkNotModified(eTag)) {
+            return;
+        }
+
+        byte[] bytes = responses.get(new Key(query, version, Encoding.IDENTITY), key -> serialize(body.get()));
+        if (encoding != Encoding.IDENTITY) {
+            // looked up apart from the json, the cache does not allow one load inside another
+            byte[] json = bytes;
+            bytes = responses.get(new Key(query, version, encoding), key -> compress(json, encoding));
+        }
+
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (encoding != Encoding.IDENTITY) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token);
+        }
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    public void invalidateAll() {
+        responses.invalidateAll();
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] compress(byte[] json, Encoding encoding) {
+        try {
+            return switch (encoding) {
+                case BROTLI -> brotli(json);
+                case GZIP -> gzip(json);
+                case IDENTITY -> json;
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] brotli(byte[] json) throws IOException {
+        return Encoder.compress(json, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+    }
+}
@@ -0,0 +1,171 @@
+package com.kakreak.customer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// one memory-mapped, append-only file of [length][crc32][body] frames, a zero length marks the end
+class CustomerLogSegment implements AutoCloseable {
+
+    static final int FRAME_HEADER_BYTES = 8;
+
+    private final long sequence;
+    private final Path path;
+    private final FileChannel channel;
+    // only absolute gets and puts are used, so concurrent readers never touch the buffer position
+    private final MappedByteBuffer buffer;
+
+    // guarded by the writer lock of the owning dao
+    private int writePosition;
+    private int records;
+    private int liveRecords;
+    private int forcedPosition;
+    // ids whose put here a later record replaced, a tombstone for them is needed while this segment exists
+    private final Set<Long> supersededIds = new HashSet<>();
+
+    private CustomerLogSegment(long sequence, Path path, FileChannel channel) throws IOException {
+        this.sequence = sequence;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+
+    static CustomerLogSegment create(Path path, long sequence, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // growing the file before mapping leaves it zero filled, which reads as the end of the segment
+        channel.write(ByteBuffer.allocate(1), size - 1);
+        return new CustomerLogSegment(sequence, path, channel);
+    }
+
+    static CustomerLogSegment open(Path path, long sequence) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CustomerLogSegment(sequence, path, channel);
+    }
+
+    // the body of the frame at offset, or null when there is no intact frame there
+    byte[] read(int offset) {
+        if (offset + FRAME_HEADER_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || length > buffer.capacity() - offset - FRAME_HEADER_BYTES) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        buffer.get(offset + FRAME_HEADER_BYTES, body);
+        return checksum(body) == buffer.getInt(offset + 4) ? body : null;
+    }
+
+    int readInt(int position) {
+        return buffer.getInt(position);
+    }
+
+    // the offset the body was written at, or -1 when the segment is full
+    int append(byte[] body) {
+        int offset = writePosition;
+        if (body.length > buffer.capacity() - offset - FRAME_HEADER_BYTES) {
+            return -1;
+        }
+        buffer.put(offset + FRAME_HEADER_BYTES, body);
+        buffer.putInt(offset + 4, checksum(body));
+        buffer.putInt(offset, body.length);
+        writePosition = offset + FRAME_HEADER_BYTES + body.length;
+        records++;
+        return offset;
+    }
+
+    // whether nothing but zeros can follow position, so no frame was ever started there
+    boolean endsAt(int position) {
+        return position + 4 > buffer.capacity() || buffer.getInt(position) == 0;
+    }
+
+    // discards whatever a crash left behind after the last intact frame
+    void truncate(int position) {
+        if (endsAt(position)) {
+            writePosition = position;
+            return;
+        }
+        byte[] zeros = new byte[64 * 1024];
+        for (int i = position; i < buffer.capacity(); i += zeros.length) {
+            buffer.put(i, zeros, 0, Math.min(zeros.length, buffer.capacity() - i));
+        }
+        writePosition = position;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    // flushes only what was appended since the last call
+    void forceAppended() {
+        if (forcedPosition < writePosition) {
+            buffer.force(forcedPosition, writePosition - forcedPosition);
+            forcedPosition = writePosition;
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    void setWritePosition(int writePosition) {
+        this.writePosition = writePosition;
+    }
+
+    int records() {
+        return records;
+    }
+
+    void addRecord() {
+        records++;
+    }
+
+    int liveRecords() {
+        return liveRecords;
+    }
+
+    void addLiveRecords(int delta) {
+        liveRecords += delta;
+    }
+
+    void addSuperseded(long id) {
+        supersededIds.add(id);
+    }
+
+    boolean holdsSuperseded(long id) {
+        return supersededIds.contains(id);
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
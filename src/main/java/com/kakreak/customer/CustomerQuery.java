@@ -0,0 +1,69 @@
+package com.kakreak.customer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+// a filtered page of customers, afterId is the keyset cursor and only applies when sorting by id
+public record CustomerQuery(
+        Integer minAge,
+        Integer maxAge,
+        String emailDomain,
+        CustomerSort sort,
+        long afterId,
+        int limit
+) {
+
+    public CustomerQuery {
+        emailDomain = emailDomain == null ? null : emailDomain.toLowerCase(Locale.ROOT);
+    }
+
+    // plain id order, which the daos answer without the filter machinery
+    public boolean isUnfiltered() {
+        return minAge == null && maxAge == null && emailDomain == null && sort == CustomerSort.ID;
+    }
+
+    public boolean matchesAge(int age) {
+        return (minAge == null || age >= minAge) && (maxAge == null || age <= maxAge);
+    }
+
+    public boolean matches(Customer customer) {
+        return matchesAge(customer.getAge())
+                && (emailDomain == null || customer.getEmail().toLowerCase(Locale.ROOT).endsWith("@" + emailDomain));
+    }
+
+    // the first limit matches in sort order out of customers given in id order past the cursor,
+    // holding no more than limit of them at a time
+    public List<Customer> select(Iterable<Customer> customers) {
+        if (sort == CustomerSort.ID) {
+            List<Customer> selected = new ArrayList<>();
+            for (Customer customer : customers) {
+                if (selected.size() == limit) {
+                    break;
+                }
+                if (matches(customer)) {
+                    selected.add(customer);
+                }
+            }
+            return selected;
+        }
+        Comparator<Customer> order = sort.order();
+        PriorityQueue<Customer> top = new PriorityQueue<>(limit + 1, order.reversed());
+        for (Customer customer : customers) {
+            if (!matches(customer)) {
+                continue;
+            }
+            if (top.size() < limit) {
+                top.add(customer);
+            } else if (order.compare(customer, top.peek()) < 0) {
+                top.poll();
+                top.add(customer);
+            }
+        }
+        List<Customer> selected = new ArrayList<>(top);
+        selected.sort(order);
+        return selected;
+    }
+}
@@ -0,0 +1,215 @@
+package com.kakreak.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// the non-blocking counterpart of CustomerJDBCDataAccessService, it always reads
+// the database directly whichever customer.dao and cache the blocking stack uses
+@Repository
+public class CustomerR2DBCDataAccessService {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2DBCDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                """;
+        return databaseClient.sql(sql)
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .all();
+    }
+
+    public Flux<Customer> selectCustomers(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """;
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .all();
+    }
+
+    public Flux<Customer> streamCustomers() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                """;
+        // rows are fetched through a portal as the subscriber requests them,
+        // so a slow client holds back the database instead of filling the heap
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .all();
+    }
+
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .one();
+    }
+
+    public Mono<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    public Mono<Void> insertCustomers(List<Customer> customers) {
+        // one statement over parallel arrays, so the batch is atomic without a transaction
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT *
+                FROM unnest(CAST(:names AS text[]), CAST(:emails AS text[]), CAST(:ages AS int[]))
+                """;
+        return databaseClient.sql(sql)
+                .bind("names", customers.stream().map(Customer::getName).toArray(String[]::new))
+                .bind("emails", customers.stream().map(Customer::getEmail).toArray(String[]::new))
+                .bind("ages", customers.stream().map(Customer::getAge).toArray(Long[]::new))
+                .then();
+    }
+
+    public Mono<Boolean> existsPersonWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS (SELECT 1 FROM customer WHERE email = :email) AS found
+                """;
+        return databaseClient.sql(sql)
+                .bind("email", email)
+                .map(row -> row.get("found", Boolean.class))
+                .one();
+    }
+
+    public Flux<String> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(:emails)
+                """;
+        return databaseClient.sql(sql)
+                .bind("emails", emails.toArray(String[]::new))
+                .map(row -> row.get("email", String.class))
+                .all();
+    }
+
+    public Mono<Boolean> deleteCustomer(Long id) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    public Flux<Long> deleteCustomersByIds(Collection<Long> ids) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ANY(:ids)
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("ids", ids.toArray(Long[]::new))
+                .map(row -> row.get("id", Long.class))
+                .all();
+    }
+
+    public Mono<CustomerUpdateResult> updateCustomer(Customer update) {
+        Map<String, Object> columns = CustomerSql.changedColumns(update);
+        if (columns.isEmpty()) {
+            return selectCustomerById(update.getId())
+                    .map(customer -> CustomerUpdateResult.UNCHANGED)
+                    .defaultIfEmpty(CustomerUpdateResult.NOT_FOUND);
+        }
+
+        // same single round trip as the jdbc dao
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(CustomerSql.updateChangedColumnsReportingFound(columns))
+                .bind("id", update.getId());
+        for (Map.Entry<String, Object> value : columns.entrySet()) {
+            spec = spec.bind(value.getKey(), value.getValue());
+        }
+        return spec.map(row -> {
+                    if (Boolean.TRUE.equals(row.get("updated", Boolean.class))) {
+                        return CustomerUpdateResult.UPDATED;
+                    }
+                    return Boolean.TRUE.equals(row.get("found", Boolean.class))
+                            ? CustomerUpdateResult.UNCHANGED
+                            : CustomerUpdateResult.NOT_FOUND;
+                })
+                .one();
+    }
+
+    public Mono<CustomerAgeStatistics> selectAgeStatistics(int bucketWidth) {
+        // the first row is the whole table
+        return databaseClient.sql(CustomerSql.AGE_STATISTICS)
+                .bind("bucketWidth", bucketWidth)
+                .fetch()
+                .all()
+                .collectList()
+                .map(rows -> {
+                    Map<String, Object> total = rows.get(0);
+                    List<CustomerAgeStatistics.AgeBucket> histogram = new ArrayList<>(rows.size() - 1);
+                    for (Map<String, Object> row : rows.subList(1, rows.size())) {
+                        int bucket = (Integer) row.get("bucket");
+                        histogram.add(new CustomerAgeStatistics.AgeBucket(bucket, bucket + bucketWidth, (Long) row.get("count")));
+                    }
+                    return new CustomerAgeStatistics(
+                            (Long) total.get("count"),
+                            (Integer) total.get("min_age"),
+                            (Integer) total.get("max_age"),
+                            (Double) total.get("mean_age"),
+                            (Double) total.get("p50"),
+                            (Double) total.get("p90"),
+                            (Double) total.get("p95"),
+                            (Double) total.get("p99"),
+                            histogram
+                    );
+                });
+    }
+
+    private static Customer toCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class)
+        );
+    }
+}
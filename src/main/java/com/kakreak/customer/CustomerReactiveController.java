@@ -0,0 +1,81 @@
+package com.kakreak.customer;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// the request thread is handed back while the database works, mvc resumes the
+// exchange when the Mono or Flux completes
+@RestController
+@RequestMapping("api/v1/reactive/customers/")
+public class CustomerReactiveController {
+
+    private final CustomerReactiveService customerService;
+
+    public CustomerReactiveController(CustomerReactiveService customerService) {
+        this.customerService = customerService;
+    }
+
+    @GetMapping
+    public Flux<Customer> getCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CustomerPage> getCustomerPage(@RequestParam(value = "after", required = false) Long after,
+                                              @RequestParam("limit") int limit) {
+        return customerService.getCustomerPage(after, limit);
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers() {
+        // written one line per row, the next rows are only requested once the client keeps up
+        return customerService.exportCustomers();
+    }
+
+    @GetMapping("email-availability")
+    public Mono<CustomerEmailAvailability> getEmailAvailability(@RequestParam("email") String email) {
+        return customerService.isEmailAvailable(email)
+                .map(available -> new CustomerEmailAvailability(email, available));
+    }
+
+    @GetMapping("statistics/age")
+    public Mono<CustomerAgeStatistics> getAgeStatistics(@RequestParam(value = "bucketWidth", defaultValue = "10") int bucketWidth) {
+        return customerService.getAgeStatistics(bucketWidth);
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<Customer> getCustomer(@PathVariable("customerId") Long customerId) {
+        return customerService.getCustomerById(customerId);
+    }
+
+    @PostMapping
+    public Mono<Void> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    @PostMapping("batch")
+    public Mono<List<CustomerBatchRegistrationResult>> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Long customerId) {
+        return customerService.deleteCustomerById(customerId);
+    }
+
+    @PostMapping("batch/delete")
+    public Mono<CustomerBatchDeleteResult> deleteCustomers(@RequestBody List<Long> customerIds) {
+        return customerService.deleteCustomersByIds(customerIds);
+    }
+
+    @PutMapping("{customerId}")
+    public Mono<Void> updateCustomer(@PathVariable("customerId") Long customerId,
+                                     @RequestBody CustomerUpdateRequest request) {
+        return customerService.updateCustomerById(customerId, request);
+    }
+}
@@ -0,0 +1,147 @@
+package com.kakreak.customer;
+
+import com.kakreak.exception.ResourceNotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// mirrors CustomerService, every database call returns without holding a thread. The checks and
+// batch handling come from CustomerRequestRules, run inside the pipeline so they fail as an error signal
+@Service
+public class CustomerReactiveService {
+
+    private final CustomerR2DBCDataAccessService customerDataAccessService;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final CustomerRequestRules customerRequestRules;
+    private final CustomerListResponseCache customerListResponseCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CustomerReactiveService(CustomerR2DBCDataAccessService customerDataAccessService,
+                                   CustomerEmailFilter customerEmailFilter,
+                                   CustomerRequestRules customerRequestRules,
+                                   CustomerListResponseCache customerListResponseCache,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.customerDataAccessService = customerDataAccessService;
+        this.customerEmailFilter = customerEmailFilter;
+        this.customerRequestRules = customerRequestRules;
+        this.customerListResponseCache = customerListResponseCache;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDataAccessService.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomerPage(Long after, int limit) {
+        long afterId = after == null ? 0 : after;
+        return Mono.fromRunnable(() -> customerRequestRules.checkPageLimit(limit))
+                .then(customerDataAccessService.selectCustomers(afterId, limit).collectList())
+                .map(customers -> customerRequestRules.page(customers, limit, CustomerSort.ID));
+    }
+
+    public Flux<Customer> exportCustomers() {
+        return customerDataAccessService.streamCustomers();
+    }
+
+    public Mono<Customer> getCustomerById(Long id) {
+        return customerDataAccessService.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> customerRequestRules.notFound(id)));
+    }
+
+    // same advisory answer as CustomerService, a filter miss skips the database
+    public Mono<Boolean> isEmailAvailable(String email) {
+        if (!customerEmailFilter.mightContain(email)) {
+            return Mono.just(true);
+        }
+        return customerDataAccessService.existsPersonWithEmail(email)
+                .map(exists -> !exists);
+    }
+
+    public Mono<CustomerAgeStatistics> getAgeStatistics(int bucketWidth) {
+        return Mono.fromRunnable(() -> customerRequestRules.checkBucketWidth(bucketWidth))
+                .then(customerDataAccessService.selectAgeStatistics(bucketWidth));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = customerRequestRules.newCustomer(customerRegistrationRequest);
+        // the email constraint decides, so concurrent signups cannot both pass a check
+        return customerDataAccessService.insertCustomerIfEmailAbsent(customer)
+                .switchIfEmpty(Mono.error(customerRequestRules::emailTaken))
+                .doOnNext(id -> {
+                    customerEmailFilter.put(customer.getEmail());
+                    customersChanged(List.of(id));
+                })
+                .then();
+    }
+
+    public Mono<List<CustomerBatchRegistrationResult>> addCustomers(List<CustomerRegistrationRequest> requests) {
+        return Mono.fromSupplier(() -> customerRequestRules.batchEmails(requests))
+                .flatMap(emails -> emails.isEmpty()
+                        ? Mono.just(Set.<String>of())
+                        : customerDataAccessService.selectExistingEmails(emails).collect(Collectors.toSet()))
+                .flatMap(existing -> {
+                    CustomerRequestRules.BatchRegistration batch = customerRequestRules.planBatch(requests, existing);
+                    List<Customer> customers = batch.customers();
+                    if (customers.isEmpty()) {
+                        return Mono.just(batch.results());
+                    }
+                    return customerDataAccessService.insertCustomers(customers)
+                            .onErrorMap(DataIntegrityViolationException.class,
+                                    e -> customerRequestRules.emailRegisteredConcurrently())
+                            .then(Mono.fromRunnable(() -> {
+                                customers.forEach(customer -> customerEmailFilter.put(customer.getEmail()));
+                                customersChanged(List.of());
+                            }))
+                            .thenReturn(batch.results());
+                });
+    }
+
+    public Mono<Void> deleteCustomerById(Long customerId) {
+        // the affected row count tells whether the customer existed
+        return customerDataAccessService.deleteCustomer(customerId)
+                .filter(deleted -> deleted)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Customer " + customerId + " does not exist.")))
+                .doOnNext(deleted -> customersChanged(List.of(customerId)))
+                .then();
+    }
+
+    public Mono<CustomerBatchDeleteResult> deleteCustomersByIds(List<Long> customerIds) {
+        return Mono.fromSupplier(() -> customerRequestRules.distinctDeleteIds(customerIds))
+                .flatMap(distinctIds -> customerDataAccessService.deleteCustomersByIds(distinctIds)
+                        .collect(Collectors.toSet())
+                        .map(deletedIds -> {
+                            if (!deletedIds.isEmpty()) {
+                                customersChanged(deletedIds);
+                            }
+                            return customerRequestRules.deleteResult(distinctIds, deletedIds);
+                        }));
+    }
+
+    public Mono<Void> updateCustomerById(Long customerId, CustomerUpdateRequest customerUpdateRequest) {
+        return Mono.fromSupplier(() -> customerRequestRules.update(customerId, customerUpdateRequest))
+                .flatMap(customerDataAccessService::updateCustomer)
+                // only the email column carries a constraint an update can break
+                .onErrorMap(DataIntegrityViolationException.class, e -> customerRequestRules.emailTaken())
+                .doOnNext(result -> {
+                    customerRequestRules.checkUpdated(customerId, result);
+                    if (customerUpdateRequest.email() != null) {
+                        customerEmailFilter.put(customerUpdateRequest.email());
+                    }
+                    customersChanged(List.of(customerId));
+                })
+                .then();
+    }
+
+    // the same invalidation the servlet api gets from CachingCustomerDao and CustomerService
+    private void customersChanged(Collection<Long> customerIds) {
+        eventPublisher.publishEvent(new CustomersChangedEvent(customerIds));
+        customerListResponseCache.invalidateAll();
+    }
+}
@@ -1,7 +1,56 @@
 package com.kakreak.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long>, CustomerRepositoryCustom {
     boolean existsCustomerByEmail(String name);
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query(value = """
+            INSERT INTO customer(name, email, age)
+            VALUES (:name, :email, :age)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Optional<Long> insertCustomerIfEmailAbsent(@Param("name") String name,
+                                                  @Param("email") String email,
+                                                  @Param("age") Integer age);
+
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(@Param("id") Long id);
+
+    @Query(value = """
+            DELETE
+            FROM customer
+            WHERE id IN (:ids)
+            RETURNING id
+            """, nativeQuery = true)
+    List<Long> deleteCustomersByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query(value = """
+            SELECT CAST(COALESCE(SUM(version), 0) AS bigint)
+            FROM customer_table_version
+            """, nativeQuery = true)
+    long selectTableVersion();
+
+    // constructor expression so rows are not attached to the persistence context
+    @Query("SELECT new com.kakreak.customer.Customer(c.id, c.name, c.email, c.age) FROM Customer c")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Customer> streamAllCustomers();
 }
@@ -0,0 +1,12 @@
+package com.kakreak.customer;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CustomerRepositoryCustom {
+    int updateChangedFields(Customer update);
+    CustomerAgeStatistics selectAgeStatistics(int bucketWidth);
+    List<Customer> searchCustomers(String query, int limit);
+    List<Customer> selectCustomers(CustomerQuery query);
+    Optional<VersionedCustomer> findVersionedById(Long id);
+}
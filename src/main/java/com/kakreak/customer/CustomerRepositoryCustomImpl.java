@@ -0,0 +1,139 @@
+package com.kakreak.customer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+class CustomerRepositoryCustomImpl implements CustomerRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateChangedFields(Customer update) {
+        Map<String, Object> columns = CustomerSql.changedColumns(update);
+        if (columns.isEmpty()) {
+            return 0;
+        }
+        Query query = entityManager.createNativeQuery(CustomerSql.updateChangedColumns(columns))
+                .setParameter("id", update.getId());
+        columns.forEach(query::setParameter);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        @SuppressWarnings("unchecked")
+        List<Tuple> rows = entityManager.createNativeQuery(CustomerSql.AGE_STATISTICS, Tuple.class)
+                .setParameter("bucketWidth", bucketWidth)
+                .getResultList();
+
+        Tuple totals = rows.get(0);
+        List<CustomerAgeStatistics.AgeBucket> histogram = rows.stream()
+                .skip(1)
+                .map(row -> {
+                    int bucket = row.get("bucket", Integer.class);
+                    return new CustomerAgeStatistics.AgeBucket(bucket, bucket + bucketWidth, row.get("count", Long.class));
+                })
+                .toList();
+        return new CustomerAgeStatistics(
+                totals.get("count", Long.class),
+                totals.get("min_age", Integer.class),
+                totals.get("max_age", Integer.class),
+                totals.get("mean_age", Double.class),
+                totals.get("p50", Double.class),
+                totals.get("p90", Double.class),
+                totals.get("p95", Double.class),
+                totals.get("p99", Double.class),
+                histogram
+        );
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        // tuples rather than entities, so the rows are not attached to the persistence context
+        Query search = entityManager.createNativeQuery(CustomerSql.SEARCH, Tuple.class);
+        CustomerSql.searchParameters(query, limit).forEach(search::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Tuple> rows = search.getResultList();
+        return rows.stream()
+                .map(row -> new Customer(
+                        row.get("id", Long.class),
+                        row.get("name", String.class),
+                        row.get("email", String.class),
+                        row.get("age", Integer.class)
+                ))
+                .toList();
+    }
+
+    @Override
+    public Optional<VersionedCustomer> findVersionedById(Long id) {
+        @SuppressWarnings("unchecked")
+        List<Tuple> rows = entityManager.createNativeQuery(CustomerSql.VERSIONED_BY_ID, Tuple.class)
+                .setParameter("id", id)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new VersionedCustomer(
+                        new Customer(
+                                row.get("id", Long.class),
+                                row.get("name", String.class),
+                                row.get("email", String.class),
+                                row.get("age", Integer.class)
+                        ),
+                        row.get("version", Long.class)
+                ))
+                .findFirst();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        HibernateCriteriaBuilder builder = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        CriteriaQuery<Customer> criteria = builder.createQuery(Customer.class);
+        Root<Customer> customer = criteria.from(Customer.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (query.sort() == CustomerSort.ID) {
+            predicates.add(builder.greaterThan(customer.get("id"), query.afterId()));
+        }
+        if (query.minAge() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(customer.get("age"), query.minAge()));
+        }
+        if (query.maxAge() != null) {
+            predicates.add(builder.lessThanOrEqualTo(customer.get("age"), query.maxAge()));
+        }
+        if (query.emailDomain() != null) {
+            // served by the trigram index on email
+            predicates.add(builder.ilike(customer.get("email"), "%@" + CustomerSql.escapeLike(query.emailDomain()), '\\'));
+        }
+        List<Order> order = switch (query.sort()) {
+            case ID -> List.of(builder.asc(customer.get("id")));
+            case AGE -> List.of(builder.asc(customer.get("age")), builder.asc(customer.get("id")));
+            case AGE_DESC -> List.of(builder.desc(customer.get("age")), builder.desc(customer.get("id")));
+        };
+
+        // constructor expression so rows are not attached to the persistence context
+        criteria.select(builder.construct(Customer.class, new Selection<?>[]{
+                        customer.get("id"),
+                        customer.get("name"),
+                        customer.get("email"),
+                        customer.get("age")}))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(order);
+        return entityManager.createQuery(criteria)
+                .setMaxResults(query.limit())
+                .getResultList();
+    }
+}
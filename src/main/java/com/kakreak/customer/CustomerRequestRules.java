@@ -0,0 +1,153 @@
+package com.kakreak.customer;
+
+import com.kakreak.exception.DuplicateResourceException;
+import com.kakreak.exception.RequestValidationException;
+import com.kakreak.exception.ResourceNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// the limits and request handling CustomerService and CustomerReactiveService share,
+// everything here is plain computation, the services only add how they reach the database
+@Component
+public class CustomerRequestRules {
+
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 5000;
+
+    public record BatchRegistration(List<CustomerBatchRegistrationResult> results, List<Customer> customers) {
+    }
+
+    public void checkPageLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    // a full page may have more after it, its last id is where the next one starts.
+    // only id order has a cursor, the other orders answer top k questions
+    public CustomerPage page(List<Customer> customers, int limit, CustomerSort sort) {
+        Long nextCursor = sort == CustomerSort.ID && customers.size() == limit
+                ? customers.get(customers.size() - 1).getId()
+                : null;
+        return new CustomerPage(customers, nextCursor);
+    }
+
+    public void checkBucketWidth(int bucketWidth) {
+        if (bucketWidth < 1) {
+            throw new RequestValidationException("Bucket width must be at least 1");
+        }
+    }
+
+    public Customer newCustomer(CustomerRegistrationRequest request) {
+        return new Customer(
+                request.name(),
+                request.email(),
+                request.age()
+        );
+    }
+
+    public ResourceNotFoundException notFound(Long customerId) {
+        return new ResourceNotFoundException("Customer " + customerId + " does not exists");
+    }
+
+    public DuplicateResourceException emailTaken() {
+        return new DuplicateResourceException("Email already taken");
+    }
+
+    // another request registered one of the emails after the batch was checked
+    public DuplicateResourceException emailRegisteredConcurrently() {
+        return new DuplicateResourceException("Email registered concurrently, retry the batch");
+    }
+
+    // the emails worth asking the database about, checked with a single query
+    public Set<String> batchEmails(List<CustomerRegistrationRequest> requests) {
+        checkBatchSize(requests.size());
+        return requests.stream()
+                .filter(this::isComplete)
+                .map(CustomerRegistrationRequest::email)
+                .collect(Collectors.toSet());
+    }
+
+    public BatchRegistration planBatch(List<CustomerRegistrationRequest> requests, Set<String> existingEmails) {
+        List<CustomerBatchRegistrationResult> results = new ArrayList<>(requests.size());
+        List<Customer> customers = new ArrayList<>();
+        Set<String> batchEmails = new HashSet<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            CustomerBatchRegistrationResult.Status status;
+            if (!isComplete(request)) {
+                status = CustomerBatchRegistrationResult.Status.INVALID;
+            } else if (existingEmails.contains(request.email())) {
+                status = CustomerBatchRegistrationResult.Status.DUPLICATE_EMAIL;
+            } else if (!batchEmails.add(request.email())) {
+                status = CustomerBatchRegistrationResult.Status.DUPLICATE_IN_BATCH;
+            } else {
+                status = CustomerBatchRegistrationResult.Status.CREATED;
+                customers.add(newCustomer(request));
+            }
+            results.add(new CustomerBatchRegistrationResult(i, request.email(), status));
+        }
+        return new BatchRegistration(results, customers);
+    }
+
+    public List<Long> distinctDeleteIds(List<Long> customerIds) {
+        checkBatchSize(customerIds.size());
+        if (customerIds.stream().anyMatch(Objects::isNull)) {
+            throw new RequestValidationException("Customer ids must not be null");
+        }
+        return customerIds.stream()
+                .distinct()
+                .toList();
+    }
+
+    public CustomerBatchDeleteResult deleteResult(List<Long> distinctIds, Set<Long> deletedIds) {
+        Map<Boolean, List<Long>> partitionedIds = distinctIds.stream()
+                .collect(Collectors.partitioningBy(deletedIds::contains));
+        return new CustomerBatchDeleteResult(partitionedIds.get(true), partitionedIds.get(false));
+    }
+
+    public Customer update(Long customerId, CustomerUpdateRequest request) {
+        if (request.name() == null
+                && request.email() == null
+                && request.age() == null)
+            throw new RequestValidationException("No data changed");
+
+        return new Customer(
+                customerId,
+                request.name(),
+                request.email(),
+                request.age()
+        );
+    }
+
+    // returns only when the row was updated
+    public void checkUpdated(Long customerId, CustomerUpdateResult result) {
+        switch (result) {
+            case NOT_FOUND -> throw notFound(customerId);
+            case UNCHANGED -> throw new RequestValidationException("No data changed");
+            case UPDATED -> {
+            }
+        }
+    }
+
+    private void checkBatchSize(int size) {
+        if (size < 1 || size > MAX_BATCH_SIZE) {
+            throw new RequestValidationException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+    }
+
+    private boolean isComplete(CustomerRegistrationRequest request) {
+        return request != null
+                && request.name() != null
+                && request.email() != null
+                && request.age() != null;
+    }
+}
@@ -0,0 +1,526 @@
+package com.kakreak.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Repository("segment")
+@Lazy
+public class CustomerSegmentDataAccessService implements CustomerDao, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerSegmentDataAccessService.class);
+
+    private static final String SEGMENT_PREFIX = "customer-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // the highest id handed out so far, heads every segment so compaction can never lose it
+    private static final byte LAST_ID = 3;
+
+    private final Path directory;
+    private final int segmentSize;
+    // without it a write is acknowledged once the os has it, which survives the process but not the machine
+    private final boolean syncWrites;
+    private final ScheduledExecutorService compactor;
+
+    // writers append one at a time, readers only go through the indexes and never lock
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentSkipListMap<Long, CustomerLogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, RecordLocation> locationsById = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Long> customerIdsByEmail = new ConcurrentHashMap<>();
+    private final CustomerTrigramIndex searchIndex = new CustomerTrigramIndex();
+    private CustomerLogSegment activeSegment;
+    private long lastCustomerId;
+    // the end of the log, only ever grows, also across restarts and compactions
+    private volatile long tableVersion;
+
+    public CustomerSegmentDataAccessService(@Value("${customer.segment.directory:data/customers}") Path directory,
+                                            @Value("${customer.segment.size:16MB}") DataSize segmentSize,
+                                            @Value("${customer.segment.compaction-interval:1m}") Duration compactionInterval,
+                                            @Value("${customer.segment.sync-writes:false}") boolean syncWrites) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.syncWrites = syncWrites;
+        Files.createDirectories(directory);
+        replay();
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-segment-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = compactionInterval.toMillis();
+        compactor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>(locationsById.size());
+        forEachCustomer(customers::add);
+        return customers;
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return locationsById.tailMap(afterId, false)
+                .values()
+                .stream()
+                .limit(limit)
+                .map(RecordLocation::read)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        Collection<RecordLocation> locations = query.sort() == CustomerSort.ID
+                ? locationsById.tailMap(query.afterId(), false).values()
+                : locationsById.values();
+        // the age is read straight out of the record, only rows in the age range are decoded
+        Iterable<Customer> customers = () -> locations.stream()
+                .filter(location -> query.matchesAge(location.age()))
+                .map(RecordLocation::read)
+                .iterator();
+        return query.select(customers);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        locationsById.values().forEach(location -> action.accept(location.read()));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return Optional.ofNullable(locationsById.get(id))
+                .map(RecordLocation::read);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .map(locationsById::get)
+                .filter(Objects::nonNull)
+                .map(RecordLocation::read)
+                .toList();
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (insertCustomerIfEmailAbsent(customer).isEmpty()) {
+            throw new DuplicateKeyException("Email " + customer.getEmail() + " already taken");
+        }
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        writeLock.lock();
+        try {
+            if (customerIdsByEmail.containsKey(customer.getEmail())) {
+                return Optional.empty();
+            }
+            long id = lastCustomerId + 1;
+            write(encodePut(id, customer));
+            sync();
+            return Optional.of(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        writeLock.lock();
+        try {
+            Set<String> emails = new HashSet<>();
+            for (Customer customer : customers) {
+                if (customerIdsByEmail.containsKey(customer.getEmail()) || !emails.add(customer.getEmail())) {
+                    throw new DuplicateKeyException("Email " + customer.getEmail() + " already taken");
+                }
+            }
+            for (Customer customer : customers) {
+                write(encodePut(lastCustomerId + 1, customer));
+            }
+            sync();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return customerIdsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(customerIdsByEmail::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        writeLock.lock();
+        try {
+            if (!locationsById.containsKey(id)) {
+                return false;
+            }
+            write(encodeDelete(id));
+            sync();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(this::deleteCustomer)
+                .toList();
+    }
+
+    @Override
+    public boolean exitsPersonWithId(Long id) {
+        return locationsById.containsKey(id);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        writeLock.lock();
+        try {
+            RecordLocation location = locationsById.get(update.getId());
+            if (location == null) {
+                return CustomerUpdateResult.NOT_FOUND;
+            }
+            Customer customer = location.read();
+            Customer updated = new Customer(
+                    customer.getId(),
+                    Objects.requireNonNullElse(update.getName(), customer.getName()),
+                    Objects.requireNonNullElse(update.getEmail(), customer.getEmail()),
+                    Objects.requireNonNullElse(update.getAge(), customer.getAge())
+            );
+            if (updated.equals(customer)) {
+                return CustomerUpdateResult.UNCHANGED;
+            }
+            Long owner = customerIdsByEmail.get(updated.getEmail());
+            if (owner != null && !owner.equals(customer.getId())) {
+                throw new DuplicateKeyException("Email " + updated.getEmail() + " already taken");
+            }
+            write(encodePut(customer.getId(), updated));
+            sync();
+            return CustomerUpdateResult.UPDATED;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        // reads the age straight out of each record without decoding the strings
+        int[] ages = new int[locationsById.size()];
+        int size = 0;
+        for (RecordLocation location : locationsById.values()) {
+            if (size == ages.length) {
+                ages = Arrays.copyOf(ages, size * 2 + 1);
+            }
+            ages[size++] = location.age();
+        }
+        return CustomerAgeStatistics.of(Arrays.copyOf(ages, size), bucketWidth);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long id) {
+        // one location, so the row and the version come from the same record
+        return Optional.ofNullable(locationsById.get(id))
+                .map(location -> new VersionedCustomer(location.read(), location.version()));
+    }
+
+    @Override
+    public long selectCustomerTableVersion() {
+        return tableVersion;
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        return searchIndex.search(query, limit, this::selectCustomerById);
+    }
+
+    // rewrites the live records of sealed segments that are mostly garbage and deletes them
+    public void compact() throws IOException {
+        writeLock.lock();
+        try {
+            for (CustomerLogSegment segment : List.copyOf(segments.values())) {
+                if (segment != activeSegment && segment.liveRecords() * 2 <= segment.records()) {
+                    compact(segment);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        compactor.shutdownNow();
+        writeLock.lock();
+        try {
+            for (CustomerLogSegment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            CustomerLogSegment segment = CustomerLogSegment.open(file, sequenceOf(file));
+            segments.put(segment.sequence(), segment);
+            int offset = 0;
+            byte[] body;
+            while ((body = segment.read(offset)) != null) {
+                segment.addRecord();
+                apply(segment, offset, body);
+                offset += CustomerLogSegment.FRAME_HEADER_BYTES + body.length;
+            }
+            segment.setWritePosition(offset);
+        }
+        activeSegment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (activeSegment == null) {
+            roll();
+        }
+        // only the active segment was being appended to, a frame failing its checksum there is a write that never completed
+        activeSegment.truncate(activeSegment.writePosition());
+        for (CustomerLogSegment segment : segments.headMap(activeSegment.sequence()).values()) {
+            if (!segment.endsAt(segment.writePosition())) {
+                LOGGER.error("Customer segment {} in {} is damaged at offset {}, the records after it are skipped",
+                        segment.sequence(), directory, segment.writePosition());
+            }
+        }
+        tableVersion = RecordLocation.version(activeSegment, activeSegment.writePosition());
+        LOGGER.info("Replayed {} customers from {} segments in {}", locationsById.size(), segments.size(), directory);
+    }
+
+    // appends the record and then publishes it through the indexes, callers hold the write lock
+    private void write(byte[] body) {
+        int offset = activeSegment.append(body);
+        if (offset < 0) {
+            roll();
+            offset = activeSegment.append(body);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Customer record of " + body.length + " bytes does not fit in a segment");
+            }
+            compactor.execute(this::compactQuietly);
+        }
+        apply(activeSegment, offset, body);
+        tableVersion = RecordLocation.version(activeSegment, activeSegment.writePosition());
+    }
+
+    private void apply(CustomerLogSegment segment, int offset, byte[] body) {
+        ByteBuffer record = ByteBuffer.wrap(body);
+        byte type = record.get();
+        long id = record.getLong();
+        lastCustomerId = Math.max(lastCustomerId, id);
+        if (type == LAST_ID) {
+            return;
+        }
+        RecordLocation previous;
+        Customer customer = null;
+        if (type == PUT) {
+            customer = decode(body);
+            previous = locationsById.put(id, new RecordLocation(segment, offset));
+            segment.addLiveRecords(1);
+            customerIdsByEmail.put(customer.getEmail(), id);
+        } else {
+            previous = locationsById.remove(id);
+        }
+        Customer previousCustomer = previous == null ? null : previous.read();
+        if (previous != null) {
+            previous.segment().addLiveRecords(-1);
+            previous.segment().addSuperseded(id);
+            if (customer == null || !previousCustomer.getEmail().equals(customer.getEmail())) {
+                customerIdsByEmail.remove(previousCustomer.getEmail(), id);
+            }
+        }
+        if (customer == null) {
+            if (previousCustomer != null) {
+                searchIndex.remove(id, previousCustomer);
+            }
+        } else if (previousCustomer == null) {
+            searchIndex.add(id, customer);
+        } else {
+            searchIndex.update(id, previousCustomer, customer);
+        }
+    }
+
+    private void compact(CustomerLogSegment segment) throws IOException {
+        // tombstones only matter while an older segment still holds the row they delete
+        Collection<CustomerLogSegment> older = segments.headMap(segment.sequence()).values();
+        int offset = 0;
+        byte[] body;
+        while (offset < segment.writePosition() && (body = segment.read(offset)) != null) {
+            ByteBuffer record = ByteBuffer.wrap(body);
+            byte type = record.get();
+            long id = record.getLong();
+            RecordLocation location = locationsById.get(id);
+            if (type == PUT && location != null && location.segment() == segment && location.offset() == offset) {
+                write(body);
+            } else if (type == DELETE && location == null
+                    && older.stream().anyMatch(olderSegment -> olderSegment.holdsSuperseded(id))) {
+                write(body);
+            }
+            offset += CustomerLogSegment.FRAME_HEADER_BYTES + body.length;
+        }
+        // the copies must be on disk before the only other copy is gone
+        activeSegment.force();
+        segments.remove(segment.sequence());
+        segment.delete();
+    }
+
+    private void sync() {
+        if (syncWrites) {
+            activeSegment.forceAppended();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not compact customer segments in {}", directory, e);
+        }
+    }
+
+    private void roll() {
+        try {
+            long sequence = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+            if (activeSegment != null && syncWrites) {
+                activeSegment.forceAppended();
+            } else if (activeSegment != null) {
+                // flushing a whole sealed segment takes long, keep it off the write path
+                compactor.execute(activeSegment::force);
+            }
+            CustomerLogSegment segment = CustomerLogSegment.create(
+                    directory.resolve(SEGMENT_PREFIX + "%019d".formatted(sequence) + SEGMENT_SUFFIX),
+                    sequence,
+                    segmentSize);
+            segment.append(encodeLastId(lastCustomerId));
+            segments.put(sequence, segment);
+            activeSegment = segment;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not create a customer segment in " + directory, e);
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] encodePut(long id, Customer customer) {
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 8 + 4 + 4 + name.length + 4 + email.length)
+                .put(PUT)
+                .putLong(id)
+                .putInt(customer.getAge())
+                .putInt(name.length)
+                .put(name)
+                .putInt(email.length)
+                .put(email)
+                .array();
+    }
+
+    private static byte[] encodeDelete(long id) {
+        return ByteBuffer.allocate(1 + 8)
+                .put(DELETE)
+                .putLong(id)
+                .array();
+    }
+
+    private static byte[] encodeLastId(long id) {
+        return ByteBuffer.allocate(1 + 8)
+                .put(LAST_ID)
+                .putLong(id)
+                .array();
+    }
+
+    private static Customer decode(byte[] body) {
+        ByteBuffer record = ByteBuffer.wrap(body);
+        record.get();
+        long id = record.getLong();
+        int age = record.getInt();
+        byte[] name = new byte[record.getInt()];
+        record.get(name);
+        byte[] email = new byte[record.getInt()];
+        record.get(email);
+        return new Customer(
+                id,
+                new String(name, StandardCharsets.UTF_8),
+                new String(email, StandardCharsets.UTF_8),
+                age
+        );
+    }
+
+    private record RecordLocation(CustomerLogSegment segment, int offset) {
+
+        Customer read() {
+            byte[] body = segment.read(offset);
+            if (body == null) {
+                throw new DataAccessResourceFailureException(
+                        "Customer record at offset " + offset + " of segment " + segment.sequence() + " is damaged");
+            }
+            return decode(body);
+        }
+
+        int age() {
+            // frame header, then the record type and id ahead of the age
+            return segment.readInt(offset + CustomerLogSegment.FRAME_HEADER_BYTES + 1 + 8);
+        }
+
+        // every write lands at a new place in the log, so the place is the version
+        long version() {
+            return version(segment, offset);
+        }
+
+        static long version(CustomerLogSegment segment, int offset) {
+            return segment.sequence() << 32 | offset;
+        }
+    }
+}
@@ -1,80 +1,258 @@
 package com.kakreak.customer;
 
-import com.kakreak.exception.DuplicateResourceException;
 import com.kakreak.exception.RequestValidationException;
 import com.kakreak.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CustomerService {
 
+    // the ids travel in the query string, which has to fit in the request header limit
+    private static final int MAX_LOOKUP_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    // shorter queries have no trigram of their own and would match most of the table
+    private static final int MIN_SEARCH_LENGTH = 3;
+
     private final CustomerDao customerDao;
+    private final CustomerCopyImporter customerCopyImporter;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final CustomerListResponseCache customerListResponseCache;
+    private final CustomerRequestRules customerRequestRules;
 
-    public CustomerService(@Qualifier("jpa") CustomerDao customerDao) {
+    public CustomerService(@Qualifier("customerDao") CustomerDao customerDao,
+                           CustomerCopyImporter customerCopyImporter,
+                           CustomerEmailFilter customerEmailFilter,
+                           CustomerListResponseCache customerListResponseCache,
+                           CustomerRequestRules customerRequestRules) {
         this.customerDao = customerDao;
+        this.customerCopyImporter = customerCopyImporter;
+        this.customerEmailFilter = customerEmailFilter;
+        this.customerListResponseCache = customerListResponseCache;
+        this.customerRequestRules = customerRequestRules;
     }
 
     public List<Customer> getAllCustomers() {
         return customerDao.selectAllCustomers();
     }
 
-    public Customer getCustomerById(Integer id) {
-        return customerDao.selectCustomerById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Customer " + id + " does not exists"));
+    public CustomerPage getCustomerPage(Long after, int limit) {
+        customerRequestRules.checkPageLimit(limit);
+        long afterId = after == null ? 0 : after;
+
+        return customerRequestRules.page(customerDao.selectCustomers(afterId, limit), limit, CustomerSort.ID);
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        // check if mail exist
-        String email = customerRegistrationRequest.email();
-        if (customerDao.existsPersonWithEmail(email)) {
-            throw new DuplicateResourceException("Email already taken");
+    // only id order has a cursor, the other orders answer top k questions such as the 100 youngest
+    public CustomerPage getCustomerPage(Long after,
+                                        int limit,
+                                        Integer minAge,
+                                        Integer maxAge,
+                                        String emailDomain,
+                                        String sort) {
+        return getCustomerPage(getCustomerQuery(after, limit, minAge, maxAge, emailDomain, sort));
+    }
+
+    // checks the parameters without reading anything, so a bad request is refused before a conditional
+    // request could be answered 304
+    public CustomerQuery getCustomerQuery(Long after,
+                                          int limit,
+                                          Integer minAge,
+                                          Integer maxAge,
+                                          String emailDomain,
+                                          String sort) {
+        CustomerSort customerSort = CustomerSort.fromParameter(sort)
+                .orElseThrow(() -> new RequestValidationException("Sort must be one of " + Arrays.stream(CustomerSort.values())
+                        .map(CustomerSort::parameter)
+                        .collect(Collectors.joining(", "))));
+        String domain = emailDomain == null || emailDomain.isBlank()
+                ? null
+                : emailDomain.trim().replaceFirst("^@", "");
+        customerRequestRules.checkPageLimit(limit);
+        if (after != null && customerSort != CustomerSort.ID) {
+            throw new RequestValidationException("After is only supported when sorting by id");
         }
-        // add
-        Customer customer = new Customer(
-                customerRegistrationRequest.name(),
-                customerRegistrationRequest.email(),
-                customerRegistrationRequest.age()
+        if (minAge != null && maxAge != null && minAge > maxAge) {
+            throw new RequestValidationException("Min age must not be greater than max age");
+        }
+        return new CustomerQuery(
+                minAge,
+                maxAge,
+                domain,
+                customerSort,
+                after == null ? 0 : after,
+                limit
         );
-        customerDao.insertCustomer(customer);
     }
 
-    public void deleteCustomerById(Integer customerId) {
+    public CustomerPage getCustomerPage(CustomerQuery query) {
+        if (query.isUnfiltered()) {
+            return getCustomerPage(query.afterId(), query.limit());
+        }
+        return customerRequestRules.page(customerDao.selectCustomers(query), query.limit(), query.sort());
+    }
+
+    public void exportCustomers(Consumer<Customer> action) {
+        customerDao.forEachCustomer(action);
+    }
 
-        // check if customerID exist
-        if (!customerDao.exitsPersonWithId(customerId)) {
-            throw new ResourceNotFoundException("Customer " + customerId + " does not exist.");
+    public Customer getCustomerById(Long id) {
+        return customerDao.selectCustomerById(id)
+                .orElseThrow(() -> customerRequestRules.notFound(id));
+    }
+
+    // one query for all ids, found customers and missing ids each in request order
+    public CustomerLookupResult getCustomersByIds(List<Long> customerIds) {
+        if (customerIds.isEmpty() || customerIds.size() > MAX_LOOKUP_SIZE) {
+            throw new RequestValidationException("Lookup size must be between 1 and " + MAX_LOOKUP_SIZE);
+        }
+        if (customerIds.stream().anyMatch(Objects::isNull)) {
+            throw new RequestValidationException("Customer ids must not be null");
+        }
+
+        List<Long> distinctIds = customerIds.stream()
+                .distinct()
+                .toList();
+        Map<Long, Customer> customersById = customerDao.selectCustomersByIds(distinctIds).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        List<Customer> found = new ArrayList<>(customersById.size());
+        List<Long> notFound = new ArrayList<>();
+        for (Long id : distinctIds) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                found.add(customer);
+            } else {
+                notFound.add(id);
+            }
+        }
+        return new CustomerLookupResult(found, notFound);
+    }
+
+    public VersionedCustomer getVersionedCustomerById(Long id) {
+        return customerDao.selectVersionedCustomerById(id)
+                .orElseThrow(() -> customerRequestRules.notFound(id));
+    }
+
+    public long getCustomerTableVersion() {
+        return customerDao.selectCustomerTableVersion();
+    }
+
+    public List<Customer> searchCustomers(String query, int limit) {
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new RequestValidationException("Limit must be between 1 and " + MAX_SEARCH_RESULTS);
         }
+        String trimmed = query.trim();
+        if (trimmed.length() < MIN_SEARCH_LENGTH) {
+            throw new RequestValidationException("Search query must have at least " + MIN_SEARCH_LENGTH + " characters");
+        }
+        return customerDao.searchCustomers(trimmed, limit);
+    }
 
-        customerDao.deleteCustomer(customerId);
+    // a filter miss answers without the database, see CustomerEmailAvailability
+    public boolean isEmailAvailable(String email) {
+        return !customerEmailFilter.mightContain(email) || !customerDao.existsPersonWithEmail(email);
     }
 
-    public void updateCustomerById(Integer customerId, CustomerUpdateRequest customerUpdateRequest) {
+    public CustomerAgeStatistics getAgeStatistics(int bucketWidth) {
+        customerRequestRules.checkBucketWidth(bucketWidth);
+        return customerDao.selectAgeStatistics(bucketWidth);
+    }
 
-        Customer customer = getCustomerById(customerId);
+    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = customerRequestRules.newCustomer(customerRegistrationRequest);
+        // the email constraint decides, so concurrent signups cannot both pass a check
+        customerDao.insertCustomerIfEmailAbsent(customer)
+                .orElseThrow(customerRequestRules::emailTaken);
+        customerEmailFilter.put(customer.getEmail());
+        customerListResponseCache.invalidateAll();
+    }
 
-        boolean ischanged = false;
+    public List<CustomerBatchRegistrationResult> addCustomers(List<CustomerRegistrationRequest> requests) {
+        Set<String> emails = customerRequestRules.batchEmails(requests);
+        Set<String> existingEmails = emails.isEmpty()
+                ? Set.of()
+                : customerDao.selectExistingEmails(emails);
+        CustomerRequestRules.BatchRegistration batch = customerRequestRules.planBatch(requests, existingEmails);
 
-        if (customerUpdateRequest.name() != null && !customerUpdateRequest.name().equals(customer.getName())) {
-            customer.setName(customerUpdateRequest.name());
-            ischanged = true;
+        List<Customer> customers = batch.customers();
+        if (!customers.isEmpty()) {
+            try {
+                customerDao.insertCustomers(customers);
+            } catch (DataIntegrityViolationException e) {
+                throw customerRequestRules.emailRegisteredConcurrently();
+            }
+            customers.forEach(customer -> customerEmailFilter.put(customer.getEmail()));
+            customerListResponseCache.invalidateAll();
         }
+        return batch.results();
+    }
 
-        if (customerUpdateRequest.email() != null && !customerUpdateRequest.email().equals(customer.getEmail())) {
-            customer.setEmail(customerUpdateRequest.email());
-            ischanged = true;
+    public CustomerImportResult importCustomersFromCsv(InputStream csv) {
+        CustomerImportResult result = customerCopyImporter.importCsv(csv, customerEmailFilter::put);
+        imported(result);
+        return result;
+    }
+
+    public CustomerImportResult importCustomersFromNdjson(InputStream ndjson) {
+        CustomerImportResult result = customerCopyImporter.importNdjson(ndjson, customerEmailFilter::put);
+        imported(result);
+        return result;
+    }
+
+    // the email filter already got each inserted email from the importer
+    private void imported(CustomerImportResult result) {
+        if (result.inserted() > 0) {
+            customerListResponseCache.invalidateAll();
         }
+    }
+
+    public void deleteCustomerById(Long customerId) {
 
-        if (customerUpdateRequest.age() != null && !customerUpdateRequest.age().equals(customer.getAge())) {
-            customer.setAge(customerUpdateRequest.age());
-            ischanged = true;
+        // the affected row count tells whether the customer existed
+        if (!customerDao.deleteCustomer(customerId)) {
+            throw new ResourceNotFoundException("Customer " + customerId + " does not exist.");
         }
+        customerListResponseCache.invalidateAll();
+    }
 
-        if (!ischanged)
-            throw new RequestValidationException("No data changed");
+    public CustomerBatchDeleteResult deleteCustomersByIds(List<Long> customerIds) {
+        List<Long> distinctIds = customerRequestRules.distinctDeleteIds(customerIds);
+        Set<Long> deletedIds = new HashSet<>(customerDao.deleteCustomersByIds(distinctIds));
+        if (!deletedIds.isEmpty()) {
+            customerListResponseCache.invalidateAll();
+        }
+        return customerRequestRules.deleteResult(distinctIds, deletedIds);
+    }
+
+    public void updateCustomerById(Long customerId, CustomerUpdateRequest customerUpdateRequest) {
+        Customer update = customerRequestRules.update(customerId, customerUpdateRequest);
 
-        customerDao.updateCustomer(customer);
+        CustomerUpdateResult result;
+        try {
+            result = customerDao.updateCustomer(update);
+        } catch (DataIntegrityViolationException e) {
+            // only the email column carries a constraint an update can break
+            throw customerRequestRules.emailTaken();
+        }
+
+        customerRequestRules.checkUpdated(customerId, result);
+        if (customerUpdateRequest.email() != null) {
+            customerEmailFilter.put(customerUpdateRequest.email());
+        }
+        customerListResponseCache.invalidateAll();
     }
 }
@@ -0,0 +1,56 @@
+package com.kakreak.customer;
+
+import com.kakreak.exception.DuplicateResourceException;
+import com.kakreak.exception.RequestValidationException;
+import com.kakreak.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// records every CustomerService call as customer.service, the outcome follows the exception
+// the service answers with, so it lines up with the http status of the request
+@Aspect
+@Component
+public class CustomerServiceTimingAspect {
+
+    static final String METRIC_NAME = "customer.service";
+
+    private final MeterRegistry meterRegistry;
+    private final String implementation;
+
+    public CustomerServiceTimingAspect(MeterRegistry meterRegistry,
+                                       @Value("${customer.dao:jpa}") String implementation) {
+        this.meterRegistry = meterRegistry;
+        this.implementation = implementation;
+    }
+
+    @Around("execution(public * com.kakreak.customer.CustomerService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = TimedCustomerDao.ERROR;
+        try {
+            Object result = joinPoint.proceed();
+            outcome = TimedCustomerDao.SUCCESS;
+            return result;
+        } catch (ResourceNotFoundException e) {
+            outcome = TimedCustomerDao.NOT_FOUND;
+            throw e;
+        } catch (DuplicateResourceException e) {
+            outcome = TimedCustomerDao.DUPLICATE;
+            throw e;
+        } catch (RequestValidationException e) {
+            outcome = "invalid";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .tag("dao", implementation)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
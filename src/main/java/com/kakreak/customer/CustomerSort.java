@@ -0,0 +1,34 @@
+package com.kakreak.customer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+
+public enum CustomerSort {
+    ID("id", Comparator.comparing(Customer::getId)),
+    AGE("age", Comparator.comparing(Customer::getAge).thenComparing(Customer::getId)),
+    // both descending, so the database reads the (age, id) index backwards
+    AGE_DESC("-age", Comparator.comparing(Customer::getAge).thenComparing(Customer::getId).reversed());
+
+    private final String parameter;
+    private final Comparator<Customer> order;
+
+    CustomerSort(String parameter, Comparator<Customer> order) {
+        this.parameter = parameter;
+        this.order = order;
+    }
+
+    public static Optional<CustomerSort> fromParameter(String parameter) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.parameter.equals(parameter))
+                .findFirst();
+    }
+
+    public String parameter() {
+        return parameter;
+    }
+
+    Comparator<Customer> order() {
+        return order;
+    }
+}
@@ -0,0 +1,106 @@
+package com.kakreak.customer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// the statements the jdbc, jpa and r2dbc daos all run, written once with named parameters
+// each of them can bind. CAST rather than ::, which hibernate reads as a parameter
+final class CustomerSql {
+
+    // the empty grouping set is the whole table and comes first, the others are the histogram buckets
+    static final String AGE_STATISTICS = """
+            SELECT bucket,
+                   count(*) AS count,
+                   min(age) AS min_age,
+                   max(age) AS max_age,
+                   CAST(avg(age) AS float8) AS mean_age,
+                   percentile_cont(0.5) WITHIN GROUP (ORDER BY age) AS p50,
+                   percentile_cont(0.9) WITHIN GROUP (ORDER BY age) AS p90,
+                   percentile_cont(0.95) WITHIN GROUP (ORDER BY age) AS p95,
+                   percentile_cont(0.99) WITHIN GROUP (ORDER BY age) AS p99
+            FROM (SELECT age, age / :bucketWidth * :bucketWidth AS bucket FROM customer) c
+            GROUP BY GROUPING SETS ((), (bucket))
+            ORDER BY bucket NULLS FIRST
+            """;
+
+    // the ILIKE and % conditions can all use the trigram indexes, the order by only ranks what they found
+    static final String SEARCH = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE name ILIKE :contains OR email ILIKE :contains OR name % :query OR email % :query
+            ORDER BY (name ILIKE :prefix OR email ILIKE :prefix) DESC,
+                     (name ILIKE :contains OR email ILIKE :contains) DESC,
+                     greatest(similarity(name, :query), similarity(email, :query)) DESC,
+                     id
+            LIMIT :limit
+            """;
+
+    // xmin is the transaction that wrote the current version of the row
+    static final String VERSIONED_BY_ID = """
+            SELECT id, name, email, age, CAST(CAST(xmin AS text) AS bigint) AS version
+            FROM customer
+            WHERE id = :id
+            """;
+
+    private CustomerSql() {
+    }
+
+    static Map<String, Object> searchParameters(String query, int limit) {
+        String prefix = escapeLike(query) + "%";
+        return Map.of(
+                "query", query,
+                "prefix", prefix,
+                "contains", "%" + prefix,
+                "limit", limit
+        );
+    }
+
+    // the columns an update sets, keyed by column and parameter name, left out when null
+    static Map<String, Object> changedColumns(Customer update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            columns.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            columns.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            columns.put("age", update.getAge());
+        }
+        return columns;
+    }
+
+    // only touches the row when a column really changes, binds :id and one parameter per column
+    static String updateChangedColumns(Map<String, Object> columns) {
+        List<String> assignments = columns.keySet().stream()
+                .map(column -> "%s = :%s".formatted(column, column))
+                .toList();
+        List<String> changes = columns.keySet().stream()
+                .map(column -> "%s IS DISTINCT FROM :%s".formatted(column, column))
+                .toList();
+        return """
+                UPDATE customer
+                SET %s
+                WHERE id = :id
+                  AND (%s)
+                """.formatted(String.join(", ", assignments), String.join(" OR ", changes));
+    }
+
+    // the update in a single round trip, the second EXISTS tells a missing row apart from an unchanged one
+    static String updateChangedColumnsReportingFound(Map<String, Object> columns) {
+        return """
+                WITH updated AS (
+                %s    RETURNING id
+                )
+                SELECT EXISTS (SELECT 1 FROM updated) AS updated,
+                       EXISTS (SELECT 1 FROM customer WHERE id = :id) AS found
+                """.formatted(updateChangedColumns(columns));
+    }
+
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
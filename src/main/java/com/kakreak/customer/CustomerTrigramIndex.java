@@ -0,0 +1,249 @@
+package com.kakreak.customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+// name and email search for the in-memory daos, ranked like the pg_trgm query of the database
+// backed ones: prefix matches, then substring matches, then fuzzy matches by similarity.
+// Trigrams follow pg_trgm: lower case, words split on anything but letters and digits, each word
+// padded with two spaces in front and one behind
+class CustomerTrigramIndex {
+
+    // pg_trgm.similarity_threshold, the default the % operator compares against
+    static final double SIMILARITY_THRESHOLD = 0.3;
+
+    // callers change one id at a time, in the order its row changes
+    private final ConcurrentHashMap<String, Posting> postings = new ConcurrentHashMap<>();
+
+    void add(long id, Customer customer) {
+        for (String trigram : trigrams(customer)) {
+            postings.computeIfAbsent(trigram, key -> new Posting()).add(id);
+        }
+    }
+
+    // only the trigrams the rows do not share change postings
+    void update(long id, Customer previous, Customer current) {
+        Set<String> added = trigrams(current);
+        Set<String> removed = trigrams(previous);
+        Set<String> kept = new HashSet<>(added);
+        kept.retainAll(removed);
+        added.removeAll(kept);
+        removed.removeAll(kept);
+        for (String trigram : added) {
+            postings.computeIfAbsent(trigram, key -> new Posting()).add(id);
+        }
+        for (String trigram : removed) {
+            removePosting(trigram, id);
+        }
+    }
+
+    void remove(long id, Customer customer) {
+        for (String trigram : trigrams(customer)) {
+            removePosting(trigram, id);
+        }
+    }
+
+    // the ids a search for the trigram would look at, including removed ones not yet compacted away
+    int postingSize(String trigram) {
+        return posting(trigram).size();
+    }
+
+    // the best matches first, rows are looked up through the dao so only their current state counts
+    List<Customer> search(String query, int limit, LongFunction<Optional<Customer>> customers) {
+        SearchQuery searchQuery = new SearchQuery(query);
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, Match.BEST_FIRST.reversed());
+        Set<Long> seen = new HashSet<>();
+        for (Posting.Snapshot candidates : candidates(searchQuery)) {
+            for (int i = 0; i < candidates.size(); i++) {
+                long id = candidates.ids()[i];
+                if (!seen.add(id)) {
+                    continue;
+                }
+                customers.apply(id)
+                        .map(customer -> Match.of(customer, searchQuery))
+                        .ifPresent(match -> {
+                            best.add(match);
+                            if (best.size() > limit) {
+                                best.poll();
+                            }
+                        });
+            }
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(Match.BEST_FIRST);
+        return matches.stream()
+                .map(Match::customer)
+                .toList();
+    }
+
+    // a fuzzy match shares at least the threshold share of the query trigrams, so it sits in one
+    // of the rarest postings past the other required ones. A substring match holds every run of
+    // three letters of the query, so the rarest of those postings covers them all
+    private List<Posting.Snapshot> candidates(SearchQuery query) {
+        List<Posting.Snapshot> candidates = new ArrayList<>();
+        List<Posting.Snapshot> fuzzy = query.trigrams().stream()
+                .map(this::posting)
+                .sorted(Comparator.comparingInt(Posting.Snapshot::size))
+                .toList();
+        // the epsilon keeps 0.3 * 10 from rounding up to 4
+        int required = Math.max(1, (int) Math.ceil(SIMILARITY_THRESHOLD * fuzzy.size() - 1e-9));
+        candidates.addAll(fuzzy.subList(0, Math.max(0, fuzzy.size() - required + 1)));
+        query.substringTrigrams().stream()
+                .map(this::posting)
+                .min(Comparator.comparingInt(Posting.Snapshot::size))
+                .ifPresent(candidates::add);
+        return candidates;
+    }
+
+    private Posting.Snapshot posting(String trigram) {
+        Posting posting = postings.get(trigram);
+        return posting == null ? Posting.Snapshot.EMPTY : posting.snapshot();
+    }
+
+    private void removePosting(String trigram, long id) {
+        Posting posting = postings.get(trigram);
+        if (posting != null) {
+            posting.remove(id);
+        }
+    }
+
+    private static Set<String> trigrams(Customer customer) {
+        Set<String> trigrams = trigrams(customer.getName());
+        trigrams.addAll(trigrams(customer.getEmail()));
+        return trigrams;
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        for (String word : words(text)) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+
+    static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int shared = 0;
+        for (String trigram : a) {
+            if (b.contains(trigram)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    private static List<String> words(String text) {
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+
+    private record SearchQuery(String text, Set<String> trigrams, Set<String> substringTrigrams) {
+
+        SearchQuery(String text) {
+            this(text.toLowerCase(Locale.ROOT), CustomerTrigramIndex.trigrams(text), unpadded(text));
+        }
+
+        private static Set<String> unpadded(String text) {
+            Set<String> trigrams = new HashSet<>();
+            for (String word : words(text)) {
+                for (int i = 0; i + 3 <= word.length(); i++) {
+                    trigrams.add(word.substring(i, i + 3));
+                }
+            }
+            return trigrams;
+        }
+    }
+
+    private record Match(Customer customer, int tier, double similarity) {
+
+        static final Comparator<Match> BEST_FIRST = Comparator.comparingInt(Match::tier)
+                .thenComparing(Comparator.comparingDouble(Match::similarity).reversed())
+                .thenComparing(match -> match.customer().getId());
+
+        // null when the customer no longer matches at all
+        static Match of(Customer customer, SearchQuery query) {
+            String name = customer.getName().toLowerCase(Locale.ROOT);
+            String email = customer.getEmail().toLowerCase(Locale.ROOT);
+            double similarity = Math.max(
+                    CustomerTrigramIndex.similarity(trigrams(name), query.trigrams()),
+                    CustomerTrigramIndex.similarity(trigrams(email), query.trigrams())
+            );
+            int tier;
+            if (name.startsWith(query.text()) || email.startsWith(query.text())) {
+                tier = 0;
+            } else if (name.contains(query.text()) || email.contains(query.text())) {
+                tier = 1;
+            } else if (similarity >= SIMILARITY_THRESHOLD) {
+                tier = 2;
+            } else {
+                return null;
+            }
+            return new Match(customer, tier, similarity);
+        }
+    }
+
+    // a list of ids readers take a snapshot of without locking. Appends fill the spare room past
+    // the published size and removals copy the array, so the ids of a snapshot never change.
+    // A removal only marks the id until half the list is marked, then one copy drops them all,
+    // a search still sees the marked ids meanwhile and skips them once the row no longer matches
+    private static final class Posting {
+
+        private volatile Snapshot snapshot = new Snapshot(new long[4], 0);
+        private final Set<Long> removed = new HashSet<>();
+
+        synchronized void add(long id) {
+            // a marked id is still in the list, taking the mark back is enough
+            if (removed.remove(id)) {
+                return;
+            }
+            long[] ids = snapshot.ids();
+            int size = snapshot.size();
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = id;
+            snapshot = new Snapshot(ids, size + 1);
+        }
+
+        synchronized void remove(long id) {
+            removed.add(id);
+            int size = snapshot.size();
+            if (removed.size() * 2 < size) {
+                return;
+            }
+            long[] ids = snapshot.ids();
+            long[] kept = new long[Math.max(4, size - removed.size())];
+            int keptSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.contains(ids[i])) {
+                    kept[keptSize++] = ids[i];
+                }
+            }
+            removed.clear();
+            snapshot = new Snapshot(kept, keptSize);
+        }
+
+        Snapshot snapshot() {
+            return snapshot;
+        }
+
+        record Snapshot(long[] ids, int size) {
+            static final Snapshot EMPTY = new Snapshot(new long[0], 0);
+        }
+    }
+}
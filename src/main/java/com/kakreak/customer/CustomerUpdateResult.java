@@ -0,0 +1,7 @@
+package com.kakreak.customer;
+
+public enum CustomerUpdateResult {
+    UPDATED,
+    UNCHANGED,
+    NOT_FOUND
+}
@@ -0,0 +1,9 @@
+package com.kakreak.customer;
+
+import java.util.Collection;
+
+// published by writes that do not go through the CustomerDao bean, so its cache can drop what they changed
+public record CustomersChangedEvent(
+        Collection<Long> customerIds
+) {
+}
@@ -0,0 +1,173 @@
+package com.kakreak.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// records every call as customer.dao, tagged with the implementation, the method and how it ended
+public class TimedCustomerDao implements CustomerDao {
+
+    static final String METRIC_NAME = "customer.dao";
+
+    static final String SUCCESS = "success";
+    static final String FOUND = "found";
+    static final String NOT_FOUND = "not_found";
+    static final String DUPLICATE = "duplicate";
+    static final String UNCHANGED = "unchanged";
+    static final String ERROR = "error";
+
+    private final CustomerDao delegate;
+    private final String implementation;
+    private final MeterRegistry meterRegistry;
+
+    public TimedCustomerDao(CustomerDao delegate, String implementation, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.implementation = implementation;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return record("selectAllCustomers", delegate::selectAllCustomers, customers -> SUCCESS);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return record("selectCustomers", () -> delegate.selectCustomers(afterId, limit), customers -> SUCCESS);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return record("selectCustomers", () -> delegate.selectCustomers(query), customers -> SUCCESS);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        // includes the time the action spends on each row, e.g. writing it to a slow client
+        record("forEachCustomer", () -> {
+            delegate.forEachCustomer(action);
+            return null;
+        }, nothing -> SUCCESS);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return record("selectCustomerById", () -> delegate.selectCustomerById(id), TimedCustomerDao::found);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return record("selectCustomersByIds", () -> delegate.selectCustomersByIds(ids), customers -> SUCCESS);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        record("insertCustomer", () -> {
+            delegate.insertCustomer(customer);
+            return null;
+        }, nothing -> SUCCESS);
+    }
+
+    @Override
+    public Optional<Long> insertCustomerIfEmailAbsent(Customer customer) {
+        return record("insertCustomerIfEmailAbsent", () -> delegate.insertCustomerIfEmailAbsent(customer),
+                id -> id.isPresent() ? SUCCESS : DUPLICATE);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        record("insertCustomers", () -> {
+            delegate.insertCustomers(customers);
+            return null;
+        }, nothing -> SUCCESS);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return record("existsPersonWithEmail", () -> delegate.existsPersonWithEmail(email), TimedCustomerDao::found);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return record("selectExistingEmails", () -> delegate.selectExistingEmails(emails), existing -> SUCCESS);
+    }
+
+    @Override
+    public boolean deleteCustomer(Long id) {
+        return record("deleteCustomer", () -> delegate.deleteCustomer(id), TimedCustomerDao::found);
+    }
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return record("deleteCustomersByIds", () -> delegate.deleteCustomersByIds(ids), deleted -> SUCCESS);
+    }
+
+    @Override
+    public boolean exitsPersonWithId(Long id) {
+        return record("exitsPersonWithId", () -> delegate.exitsPersonWithId(id), TimedCustomerDao::found);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        return record("updateCustomer", () -> delegate.updateCustomer(update), result -> switch (result) {
+            case UPDATED -> SUCCESS;
+            case UNCHANGED -> UNCHANGED;
+            case NOT_FOUND -> NOT_FOUND;
+        });
+    }
+
+    @Override
+    public CustomerAgeStatistics selectAgeStatistics(int bucketWidth) {
+        return record("selectAgeStatistics", () -> delegate.selectAgeStatistics(bucketWidth), statistics -> SUCCESS);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long id) {
+        return record("selectVersionedCustomerById", () -> delegate.selectVersionedCustomerById(id), TimedCustomerDao::found);
+    }
+
+    @Override
+    public long selectCustomerTableVersion() {
+        return record("selectCustomerTableVersion", delegate::selectCustomerTableVersion, version -> SUCCESS);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        return record("searchCustomers", () -> delegate.searchCustomers(query, limit), customers -> SUCCESS);
+    }
+
+    private <T> T record(String method, Supplier<T> call, Function<T, String> outcome) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = ERROR;
+        try {
+            T value = call.get();
+            result = outcome.apply(value);
+            return value;
+        } catch (DataIntegrityViolationException e) {
+            result = DUPLICATE;
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .tag("dao", implementation)
+                    .tag("method", method)
+                    .tag("outcome", result)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static String found(Optional<?> value) {
+        return value.isPresent() ? FOUND : NOT_FOUND;
+    }
+
+    private static String found(boolean value) {
+        return value ? FOUND : NOT_FOUND;
+    }
+}
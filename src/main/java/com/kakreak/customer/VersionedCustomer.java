@@ -0,0 +1,8 @@
+package com.kakreak.customer;
+
+// a customer and the version of it that was read, the version changes whenever the customer does
+public record VersionedCustomer(
+        Customer customer,
+        long version
+) {
+}
@@ -0,0 +1,6 @@
+-- one sequence hands out every id in blocks of 50. Hibernate takes a block per nextval and fills it
+-- itself (pooled-lo), any other insert takes a whole block for its row through the column default.
+-- Ids follow allocation order whichever path wrote them, bigint so the skipped ids cannot run it out
+ALTER TABLE customer ALTER COLUMN id TYPE BIGINT;
+
+ALTER SEQUENCE customer_id_seq AS BIGINT INCREMENT BY 50;
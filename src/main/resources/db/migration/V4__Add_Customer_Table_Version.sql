@@ -0,0 +1,25 @@
+-- a change marker for the whole customer table, bumped once per writing statement.
+-- Writers on different connections bump different slots so they do not queue behind
+-- one another on a single row, the table version is the sum of all slots
+CREATE TABLE customer_table_version (
+    slot INTEGER PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO customer_table_version(slot, version)
+SELECT slot, 0
+FROM generate_series(0, 15) AS slot;
+
+CREATE FUNCTION bump_customer_table_version() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE customer_table_version
+    SET version = version + 1
+    WHERE slot = pg_backend_pid() % 16;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_table_version
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON customer
+FOR EACH STATEMENT
+EXECUTE FUNCTION bump_customer_table_version();
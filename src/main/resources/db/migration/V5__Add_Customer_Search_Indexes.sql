@@ -0,0 +1,6 @@
+-- trigram indexes serve both the fuzzy % operator and ILIKE '%...%' substring matches
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX customer_name_trgm_idx ON customer USING GIN (name gin_trgm_ops);
+
+CREATE INDEX customer_email_trgm_idx ON customer USING GIN (email gin_trgm_ops);
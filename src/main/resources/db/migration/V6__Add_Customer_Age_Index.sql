@@ -0,0 +1,3 @@
+-- age ranges read in (age, id) order, forwards or backwards, come straight out of the index,
+-- the included columns make them index only scans once the visibility map is set
+CREATE INDEX customer_age_id_idx ON customer (age, id) INCLUDE (name, email);
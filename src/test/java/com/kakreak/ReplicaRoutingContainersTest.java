@@ -0,0 +1,150 @@
+package com.kakreak;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// a primary and a streaming replica cloned from it with pg_basebackup
+@Testcontainers
+class ReplicaRoutingContainersTest {
+
+    private static final Network NETWORK = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:latest")
+            .withNetwork(NETWORK)
+            .withNetworkAliases("primary")
+            .withDatabaseName("customer")
+            .withUsername("postgres")
+            .withPassword("1234")
+            // the image only lets replication in over the loopback
+            .withCopyToContainer(Transferable.of("""
+                    #!/bin/bash
+                    echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
+                    """, 0755), "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    private static final GenericContainer<?> replica = new GenericContainer<>("postgres:latest")
+            .withNetwork(NETWORK)
+            .dependsOn(primary)
+            .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+            .withEnv("PGPASSWORD", "1234")
+            .withCommand("bash", "-c", """
+                    gosu postgres pg_basebackup -h primary -U postgres -D /var/lib/postgresql/replica -R -X stream \
+                    && exec gosu postgres postgres -D /var/lib/postgresql/replica
+                    """)
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*\\n", 1));
+
+    private DataSource underTest;
+    private HikariDataSource replicaAdmin;
+
+    @BeforeEach
+    void setUp() {
+        Flyway.configure()
+                .dataSource(primary.getJdbcUrl(), primary.getUsername(), primary.getPassword())
+                .load()
+                .migrate();
+        String replicaUrl = "jdbc:postgresql://%s:%d/customer".formatted(
+                replica.getHost(),
+                replica.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT));
+        underTest = ReplicaRoutingDataSource.create(
+                pool(primary.getJdbcUrl()),
+                List.of(pool(replicaUrl)),
+                Duration.ofSeconds(1),
+                Duration.ofMillis(100));
+        replicaAdmin = pool(replicaUrl);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        new JdbcTemplate(replicaAdmin).execute("SELECT pg_wal_replay_resume()");
+        replicaAdmin.close();
+        ((Closeable) underTest).close();
+    }
+
+    @Test
+    void readOnlyTransactionsAreServedByTheReplicaOnceItHasCaughtUp() {
+        // Given
+        String email = insertCustomer();
+
+        // When
+        await(() -> Boolean.TRUE.equals(inTransaction(true, "SELECT pg_is_in_recovery()")));
+
+        // Then
+        assertThat(inTransaction(true, "SELECT count(*) > 0 FROM customer WHERE email = '%s'".formatted(email)))
+                .isTrue();
+        assertThat(inTransaction(false, "SELECT pg_is_in_recovery()")).isFalse();
+    }
+
+    @Test
+    void readOnlyTransactionsFallBackToThePrimaryWhileTheReplicaLags() {
+        // Given
+        await(() -> Boolean.TRUE.equals(inTransaction(true, "SELECT pg_is_in_recovery()")));
+        new JdbcTemplate(replicaAdmin).execute("SELECT pg_wal_replay_pause()");
+
+        // When
+        String email = insertCustomer();
+
+        // Then
+        await(() -> Boolean.FALSE.equals(inTransaction(true, "SELECT pg_is_in_recovery()")));
+        assertThat(inTransaction(true, "SELECT count(*) > 0 FROM customer WHERE email = '%s'".formatted(email)))
+                .isTrue();
+    }
+
+    private String insertCustomer() {
+        String email = UUID.randomUUID() + "@example.com";
+        new TransactionTemplate(new DataSourceTransactionManager(underTest)).executeWithoutResult(status ->
+                new JdbcTemplate(underTest).update("INSERT INTO customer(name, email, age) VALUES ('Alex', ?, 21)", email));
+        return email;
+    }
+
+    private Boolean inTransaction(boolean readOnly, String sql) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(underTest));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(underTest).queryForObject(sql, Boolean.class));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 30s").isLessThan(deadline);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static HikariDataSource pool(String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(url);
+        pool.setUsername("postgres");
+        pool.setPassword("1234");
+        pool.setMaximumPoolSize(2);
+        return pool;
+    }
+}
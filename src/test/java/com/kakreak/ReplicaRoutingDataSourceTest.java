@@ -0,0 +1,200 @@
+package com.kakreak;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofMillis(10);
+
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final ResultSet primaryPosition = mock(ResultSet.class);
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Statement statement = mock(Statement.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(primaryConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(primaryPosition);
+        when(primaryPosition.next()).thenReturn(true);
+        when(primaryPosition.getLong(1)).thenReturn(100L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        ReplicaRoutingDataSource.closePinningScope();
+        if (underTest != null) {
+            underTest.close();
+        }
+    }
+
+    @Test
+    void writesAndCallsOutsideReadOnlyTransactionsGoToThePrimary() throws SQLException {
+        // Given
+        Replica replica = new Replica(true, 100L);
+        underTest = routing(replica);
+        underTest.checkLag();
+
+        // When
+        Connection outside = underTest.getConnection();
+        Connection readWrite = inTransaction(false);
+
+        // Then
+        assertThat(outside).isSameAs(primaryConnection);
+        assertThat(readWrite).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenCaughtUpReplicas() throws SQLException {
+        // Given
+        Replica first = new Replica(true, 100L);
+        Replica second = new Replica(true, 120L);
+        underTest = routing(first, second);
+        underTest.checkLag();
+
+        // When
+        List<Connection> actual = List.of(inTransaction(true), inTransaction(true), inTransaction(true));
+
+        // Then
+        assertThat(actual).containsExactly(first.connection, second.connection, first.connection);
+        assertThat(underTest.lagSeconds()).containsEntry("replica-1", 0.0).containsEntry("replica-2", 0.0);
+    }
+
+    @Test
+    void replicaCutOffFromABusyPrimaryFallsBehind() throws Exception {
+        // Given
+        Replica replica = new Replica(true, 100L);
+        underTest = routing(replica);
+        underTest.checkLag();
+
+        // When
+        Thread.sleep(MAX_LAG.toMillis() * 2);
+        when(primaryPosition.getLong(1)).thenReturn(200L);
+        underTest.checkLag();
+
+        // Then
+        assertThat(inTransaction(true)).isSameAs(primaryConnection);
+        assertThat(underTest.lagSeconds().get("replica-1")).isGreaterThan(MAX_LAG.toMillis() / 1000.0);
+    }
+
+    @Test
+    void replicasOfUnknownLagAreSkipped() throws SQLException {
+        // Given
+        Replica behindEveryPosition = new Replica(true, 50L);
+        Replica promoted = new Replica(false, 100L);
+        Replica nothingReplayed = new Replica(true, null);
+        Replica unreachable = new Replica(true, 100L);
+        when(unreachable.dataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+        underTest = routing(behindEveryPosition, promoted, nothingReplayed, unreachable);
+        underTest.checkLag();
+
+        // When
+        Connection actual = inTransaction(true);
+
+        // Then
+        assertThat(actual).isSameAs(primaryConnection);
+        assertThat(underTest.lagSeconds().values()).allMatch(lag -> lag.isNaN());
+    }
+
+    @Test
+    void replicasAreSkippedWhileThePrimaryPositionIsUnknown() throws SQLException {
+        // Given
+        Replica replica = new Replica(true, 100L);
+        underTest = routing(replica);
+        underTest.checkLag();
+
+        // When
+        when(primaryPosition.getLong(1)).thenThrow(new SQLException("Connection reset"));
+        underTest.checkLag();
+
+        // Then
+        assertThat(inTransaction(true)).isSameAs(primaryConnection);
+        assertThat(underTest.lagSeconds().get("replica-1")).isNaN();
+    }
+
+    @Test
+    void requestStaysOnItsReplicaAndOnlyEverFallsBackToThePrimary() throws Exception {
+        // Given
+        Replica first = new Replica(true, 100L);
+        Replica second = new Replica(true, 100L);
+        underTest = routing(first, second);
+        underTest.checkLag();
+        ReplicaRoutingDataSource.openPinningScope();
+
+        // When
+        Connection pinned = inTransaction(true);
+        Connection stillPinned = inTransaction(true);
+        Thread.sleep(MAX_LAG.toMillis() * 2);
+        when(primaryPosition.getLong(1)).thenReturn(200L);
+        when(second.resultSet.getLong(2)).thenReturn(200L);
+        underTest.checkLag();
+        Connection fellBack = inTransaction(true);
+        when(first.resultSet.getLong(2)).thenReturn(200L);
+        underTest.checkLag();
+        Connection staysOnPrimary = inTransaction(true);
+
+        // Then
+        assertThat(pinned).isSameAs(first.connection);
+        assertThat(stillPinned).isSameAs(first.connection);
+        assertThat(fellBack).isSameAs(primaryConnection);
+        assertThat(staysOnPrimary).isSameAs(primaryConnection);
+    }
+
+    private ReplicaRoutingDataSource routing(Replica... replicas) {
+        return new ReplicaRoutingDataSource(
+                primary,
+                Arrays.stream(replicas).map(replica -> replica.dataSource).toList(),
+                MAX_LAG
+        );
+    }
+
+    private Connection inTransaction(boolean readOnly) throws SQLException {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+        try {
+            return underTest.getConnection();
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // answers the lag check with the given state, and hands out the same connection for reads
+    private static final class Replica {
+
+        private final DataSource dataSource = mock(DataSource.class);
+        private final Connection connection = mock(Connection.class);
+        private final ResultSet resultSet = mock(ResultSet.class);
+
+        // a null position is one the replica reports as NULL
+        private Replica(boolean inRecovery, Long replayed) throws SQLException {
+            Statement statement = mock(Statement.class);
+            when(dataSource.getConnection()).thenReturn(connection);
+            when(connection.createStatement()).thenReturn(statement);
+            when(statement.executeQuery(anyString())).thenReturn(resultSet);
+            when(resultSet.next()).thenReturn(true);
+            when(resultSet.getBoolean(1)).thenReturn(inRecovery);
+            when(resultSet.getLong(2)).thenReturn(replayed == null ? 0L : replayed);
+            when(resultSet.wasNull()).thenReturn(replayed == null);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.kakreak;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SlowQueryDataSourceTest {
+
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet resultSet;
+
+    private final SlowQueryLog slowQueryLog = new SlowQueryLog(3);
+
+    @Test
+    void statementsUnderTheThresholdAreNotRecorded() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ofHours(1), 0, true);
+        String sql = "DELETE FROM customer WHERE id = ?";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        when(statement.executeUpdate()).thenReturn(1);
+
+        // When
+        try (PreparedStatement delete = underTest.getConnection().prepareStatement(sql)) {
+            delete.setInt(1, 7);
+            delete.executeUpdate();
+        }
+
+        // Then
+        assertThat(slowQueryLog.recent()).isEmpty();
+        assertThat(slowQueryLog.recorded()).isZero();
+    }
+
+    @Test
+    void updatesOverTheThresholdAreRecordedWithParametersAndRows() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ZERO, 0, true);
+        String sql = "INSERT INTO customer(name, email, age) VALUES (?, ?, ?)";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        when(statement.executeUpdate()).thenReturn(1);
+
+        // When
+        try (PreparedStatement insert = underTest.getConnection().prepareStatement(sql)) {
+            insert.setString(1, "Alex");
+            insert.setString(2, "alex@gmail.com");
+            insert.setInt(3, 21);
+            insert.executeUpdate();
+        }
+
+        // Then
+        assertThat(slowQueryLog.recent()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.sql()).isEqualTo(sql);
+            assertThat(slowQuery.parameters()).containsExactly(List.of("Alex", "alex@gmail.com", "21"));
+            assertThat(slowQuery.rows()).isEqualTo(1);
+            assertThat(slowQuery.sampled()).isFalse();
+        });
+    }
+
+    @Test
+    void parametersAreLeftOutUnlessCaptureIsOn() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ZERO, 0, false);
+        String sql = "DELETE FROM customer WHERE email = ?";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        when(statement.executeUpdate()).thenReturn(1);
+
+        // When
+        try (PreparedStatement delete = underTest.getConnection().prepareStatement(sql)) {
+            delete.setString(1, "alex@gmail.com");
+            delete.executeUpdate();
+        }
+
+        // Then
+        assertThat(slowQueryLog.recent()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.sql()).isEqualTo(sql);
+            assertThat(slowQuery.parameters()).isEmpty();
+        });
+    }
+
+    @Test
+    void sampledStatementsAreRecordedEvenWhenFast() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ofHours(1), 1, true);
+        String sql = "DELETE FROM customer WHERE id = ?";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        when(statement.executeUpdate()).thenReturn(0);
+
+        // When
+        try (PreparedStatement delete = underTest.getConnection().prepareStatement(sql)) {
+            delete.setInt(1, 7);
+            delete.executeUpdate();
+        }
+
+        // Then
+        assertThat(slowQueryLog.recent()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.sampled()).isTrue();
+            assertThat(slowQuery.rows()).isZero();
+        });
+    }
+
+    @Test
+    void queriesHandOutTheDriversResultSetAndHaveNoRowCount() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ZERO, 0, true);
+        String sql = "SELECT id, name, email, age FROM customer WHERE id > ? AND age = ?";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        // When
+        ResultSet actual;
+        try (PreparedStatement select = underTest.getConnection().prepareStatement(sql)) {
+            select.setInt(1, 0);
+            select.setNull(2, Types.INTEGER);
+            actual = select.executeQuery();
+        }
+
+        // Then
+        assertThat(actual).isSameAs(resultSet);
+        assertThat(slowQueryLog.recent()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.parameters()).containsExactly(Arrays.asList("0", null));
+            assertThat(slowQuery.rows()).isNull();
+        });
+    }
+
+    @Test
+    void batchesKeepTheParametersOfTheirFirstRowsOnly() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ZERO, 0, true);
+        String sql = "INSERT INTO customer(name, email, age) VALUES (?, ?, ?)";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        int[] counts = new int[25];
+        Arrays.fill(counts, 1);
+        when(statement.executeBatch()).thenReturn(counts);
+
+        // When
+        try (PreparedStatement insert = underTest.getConnection().prepareStatement(sql)) {
+            for (int i = 0; i < 25; i++) {
+                insert.setString(1, "Customer " + i);
+                insert.setString(2, i + "@gmail.com");
+                insert.setInt(3, 20 + i);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        // Then
+        assertThat(slowQueryLog.recent()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.parameters()).hasSize(11);
+            assertThat(slowQuery.parameters().get(0)).containsExactly("Customer 0", "0@gmail.com", "20");
+            assertThat(slowQuery.parameters().get(10)).containsExactly("... 15 more");
+            assertThat(slowQuery.rows()).isEqualTo(25);
+        });
+    }
+
+    @Test
+    void statementsHandBackTheWrappedConnection() throws Exception {
+        // Given
+        DataSource underTest = SlowQueryDataSource.wrap(dataSource, slowQueryLog, Duration.ZERO, 0, true);
+        String sql = "SELECT id FROM customer";
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+
+        // When
+        Connection wrapped = underTest.getConnection();
+        Connection actual;
+        try (PreparedStatement select = wrapped.prepareStatement(sql)) {
+            actual = select.getConnection();
+        }
+
+        // Then
+        assertThat(actual).isSameAs(wrapped);
+        verify(statement, never()).getConnection();
+    }
+
+    @Test
+    void theLogKeepsOnlyTheMostRecentStatements() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            slowQueryLog.add(new SlowQueryLog.SlowQuery(null, "SELECT " + i, List.of(), 1, 1L, false, null));
+        }
+
+        // When
+        List<SlowQueryLog.SlowQuery> recent = slowQueryLog.recent();
+
+        // Then
+        assertThat(recent).extracting(SlowQueryLog.SlowQuery::sql)
+                .containsExactly("SELECT 4", "SELECT 3", "SELECT 2");
+        assertThat(slowQueryLog.recorded()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,172 @@
+package com.kakreak.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    @Mock
+    private CustomerDao delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private CachingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CachingCustomerDao(
+                delegate,
+                TransactionOperations.withoutTransaction(),
+                100,
+                Duration.ofMinutes(10),
+                Duration.ofSeconds(30),
+                meterRegistry
+        );
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCacheAfterFirstLoad() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+
+        // When
+        underTest.selectCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).contains(customer);
+        verify(delegate, times(1)).selectCustomerById(1L);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "customers").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomerByIdCachesMisses() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.exitsPersonWithId(1L)).isFalse();
+        verify(delegate, times(1)).selectCustomerById(1L);
+        verify(delegate, never()).exitsPersonWithId(1L);
+    }
+
+    @Test
+    void insertCustomerForgetsCachedMisses() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1L);
+
+        // When
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).contains(customer);
+    }
+
+    @Test
+    void updateCustomerInvalidatesCachedCustomer() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer updated = new Customer(1L, "Alexander", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.of(updated));
+        underTest.selectCustomerById(1L);
+
+        // When
+        underTest.updateCustomer(updated);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        verify(delegate).updateCustomer(updated);
+        assertThat(actual).contains(updated);
+    }
+
+    @Test
+    void deleteCustomerInvalidatesCachedCustomer() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.empty());
+        underTest.selectCustomerById(1L);
+
+        // When
+        underTest.deleteCustomer(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        verify(delegate).deleteCustomer(1L);
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyLoadsUncachedIds() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 19);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomerById(3L)).thenReturn(Optional.empty());
+        when(delegate.selectCustomersByIds(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(2L, 4L)))))
+                .thenReturn(List.of(jamila));
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(3L);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1L, 2L, 3L, 4L));
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(alex, jamila);
+        assertThat(underTest.selectCustomerById(2L)).contains(jamila);
+        assertThat(underTest.selectCustomerById(4L)).isEmpty();
+        verify(delegate, never()).selectCustomerById(2L);
+        verify(delegate, never()).selectCustomerById(4L);
+    }
+
+    @Test
+    void versionedCustomerIsCachedUntilTheCustomerIsUpdated() {
+        // Given
+        VersionedCustomer before = new VersionedCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21), 1);
+        VersionedCustomer after = new VersionedCustomer(new Customer(1L, "Alexandro", "alex@gmail.com", 21), 2);
+        Customer update = new Customer(1L, "Alexandro", null, null);
+        when(delegate.selectVersionedCustomerById(1L))
+                .thenReturn(Optional.of(before))
+                .thenReturn(Optional.of(after));
+        when(delegate.updateCustomer(update)).thenReturn(CustomerUpdateResult.UPDATED);
+
+        // When
+        Optional<VersionedCustomer> cached = underTest.selectVersionedCustomerById(1L);
+        Optional<VersionedCustomer> cachedAgain = underTest.selectVersionedCustomerById(1L);
+        underTest.updateCustomer(update);
+        Optional<VersionedCustomer> reloaded = underTest.selectVersionedCustomerById(1L);
+
+        // Then
+        assertThat(cached).contains(before);
+        assertThat(cachedAgain).contains(before);
+        assertThat(reloaded).contains(after);
+        verify(delegate, times(2)).selectVersionedCustomerById(1L);
+    }
+}
@@ -0,0 +1,126 @@
+package com.kakreak.customer;
+
+import com.kakreak.Main;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the application wired with one dao, seeded with a fixed number of customers. Postgres is
+// the one at -Dbenchmark.jdbc.url, which is emptied first, or a throwaway Testcontainers one
+@State(Scope.Benchmark)
+public class CustomerBenchmarkContext {
+
+    @Param({"jdbc", "jpa", "list", "segment"})
+    private String dao;
+
+    @Param("10000")
+    private int customers;
+
+    private PostgreSQLContainer<?> postgres;
+    private Path segmentDirectory;
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private CustomerService customerService;
+    private List<Long> ids;
+    private List<String> emails;
+    private final AtomicLong updates = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String url = System.getProperty("benchmark.jdbc.url");
+        String username = System.getProperty("benchmark.jdbc.username", "postgres");
+        String password = System.getProperty("benchmark.jdbc.password", "1234");
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>("postgres:15");
+            postgres.start();
+            url = postgres.getJdbcUrl();
+            username = postgres.getUsername();
+            password = postgres.getPassword();
+        }
+        segmentDirectory = Files.createTempDirectory("customer-segments");
+
+        context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                // command line arguments, so they win over application.yml
+                .run(
+                        "--spring.datasource.url=" + url,
+                        "--spring.datasource.username=" + username,
+                        "--spring.datasource.password=" + password,
+                        "--spring.r2dbc.url=" + url.replaceFirst("^jdbc:", "r2dbc:"),
+                        "--spring.r2dbc.username=" + username,
+                        "--spring.r2dbc.password=" + password,
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        "--customer.dao=" + dao,
+                        "--customer.segment.directory=" + segmentDirectory
+                );
+        customerDao = context.getBean(dao, CustomerDao.class);
+        customerService = context.getBean(CustomerService.class);
+
+        context.getBean(JdbcTemplate.class).execute("TRUNCATE customer");
+        List<Customer> batch = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            batch.add(newCustomer());
+        }
+        customerDao.insertCustomers(batch);
+        ids = new ArrayList<>(customers);
+        emails = new ArrayList<>(customers);
+        customerDao.forEachCustomer(customer -> {
+            ids.add(customer.getId());
+            emails.add(customer.getEmail());
+        });
+        context.getBean(CustomerEmailFilter.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+        FileSystemUtils.deleteRecursively(segmentDirectory);
+    }
+
+    CustomerDao customerDao() {
+        return customerDao;
+    }
+
+    CustomerService customerService() {
+        return customerService;
+    }
+
+    Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    String randomEmail() {
+        return emails.get(ThreadLocalRandom.current().nextInt(emails.size()));
+    }
+
+    // a name never used before, so every update really changes the row
+    String nextName() {
+        return "Customer " + updates.incrementAndGet();
+    }
+
+    static Customer newCustomer() {
+        return new Customer("Customer", UUID.randomUUID() + "@gmail.com", ThreadLocalRandom.current().nextInt(16, 99));
+    }
+}
@@ -0,0 +1,120 @@
+package com.kakreak.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kakreak.AbstractTestContainers;
+import com.kakreak.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerCopyImporterTest extends AbstractTestContainers {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private CustomerCopyImporter underTest;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = getJdbcTemplate();
+        transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+        underTest = new CustomerCopyImporter(jdbcTemplate, new ObjectMapper());
+    }
+
+    @Test
+    void importCsv() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO customer(name, email, age) VALUES (?, ?, ?)", "Taken", takenEmail, 40);
+
+        String csv = """
+                name,email,age
+                "Alex, Jr.",%s,20
+                Alex Again,%s,21
+                Taken Again,%s,22
+                No Age,%s,
+                """.formatted(email, email, takenEmail, UUID.randomUUID() + "@gmail.com");
+        List<String> insertedEmails = new ArrayList<>();
+
+        // When
+        CustomerImportResult actual = transactionTemplate.execute(status ->
+                underTest.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), insertedEmails::add));
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(4, 1, 3));
+        assertThat(insertedEmails).containsExactly(email);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT name FROM customer WHERE email = ?", String.class, email))
+                .isIn("Alex, Jr.", "Alex Again");
+    }
+
+    @Test
+    void importNdjson() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String ndjson = """
+                {"name":"Alex \\"The Great\\"","email":"%s","age":20}
+                {"name":"Missing Email","age":21}
+                """.formatted(email);
+        List<String> insertedEmails = new ArrayList<>();
+
+        // When
+        CustomerImportResult actual = transactionTemplate.execute(status ->
+                underTest.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), insertedEmails::add));
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(2, 1, 1));
+        assertThat(insertedEmails).containsExactly(email);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT name FROM customer WHERE email = ?", String.class, email))
+                .isEqualTo("Alex \"The Great\"");
+    }
+
+    @Test
+    void willThrowWhenCsvIsMalformed() {
+        // Given
+        String csv = """
+                name,email,age
+                only-one-column
+                """;
+
+        // When
+        // Then
+        assertThatThrownBy(() -> transactionTemplate.execute(status ->
+                underTest.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), email -> {})))
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    @Test
+    void willThrowWhenNdjsonHasNullRecord() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String ndjson = """
+                {"name":"Alex","email":"%s","age":20}
+                null
+                """.formatted(email);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> transactionTemplate.execute(status ->
+                underTest.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), inserted -> {})))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessageStartingWith("Malformed import: ");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ?", Long.class, email))
+                .isZero();
+    }
+}
@@ -0,0 +1,62 @@
+package com.kakreak.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// every CustomerDao through the same calls, mvn -Pjmh test runs it with the gc profiler
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById(CustomerBenchmarkContext context) {
+        return context.customerDao().selectCustomerById(context.randomId());
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmail(CustomerBenchmarkContext context) {
+        return context.customerDao().existsPersonWithEmail(context.randomEmail());
+    }
+
+    @Benchmark
+    public boolean exitsPersonWithId(CustomerBenchmarkContext context) {
+        return context.customerDao().exitsPersonWithId(context.randomId());
+    }
+
+    @Benchmark
+    public Optional<Long> insertCustomer(CustomerBenchmarkContext context) {
+        return context.customerDao().insertCustomerIfEmailAbsent(CustomerBenchmarkContext.newCustomer());
+    }
+
+    @Benchmark
+    public CustomerUpdateResult updateCustomer(CustomerBenchmarkContext context) {
+        return context.customerDao().updateCustomer(new Customer(context.randomId(), context.nextName(), null, null));
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers(CustomerBenchmarkContext context) {
+        return context.customerDao().selectAllCustomers();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomerDaoBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.kakreak.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerEmailFilterTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private CustomerEmailFilter underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerEmailFilter(customerDao, transactionManager, 10_000, 0.01);
+    }
+
+    @Test
+    void everyEmailMightMatchBeforeTheFilterIsBuilt() {
+        assertThat(underTest.mightContain("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void everyEmailMightMatchWhenTheBuildFails() {
+        // Given
+        doThrow(new IllegalStateException("database down")).when(customerDao).forEachCustomer(any());
+
+        // When
+        underTest.build();
+
+        // Then
+        assertThat(underTest.mightContain("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void buildLoadsExistingEmails() {
+        // Given
+        doAnswer(invocation -> {
+            Consumer<Customer> action = invocation.getArgument(0);
+            action.accept(new Customer(1L, "Alex", "alex@gmail.com", 21));
+            return null;
+        }).when(customerDao).forEachCustomer(any());
+
+        // When
+        underTest.build();
+
+        // Then
+        assertThat(underTest.mightContain("alex@gmail.com")).isTrue();
+        assertThat(underTest.mightContain("jamila@gmail.com")).isFalse();
+    }
+
+    @Test
+    void rebuildReadsTheTableInAReadWriteTransaction() {
+        // When
+        underTest.rebuild();
+
+        // Then
+        InOrder inOrder = inOrder(transactionManager, customerDao);
+        inOrder.verify(transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()));
+        inOrder.verify(customerDao).forEachCustomer(any());
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void putAddsEmailToBuiltFilter() {
+        // Given
+        underTest.build();
+
+        // When
+        underTest.put("jamila@gmail.com");
+
+        // Then
+        assertThat(underTest.mightContain("jamila@gmail.com")).isTrue();
+    }
+
+    @Test
+    void falsePositiveRateStaysCloseToConfiguredProbability() {
+        // Given
+        underTest.build();
+        IntStream.range(0, 10_000).forEach(i -> underTest.put("customer-" + i + "@gmail.com"));
+
+        // When
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> underTest.mightContain("unknown-" + i + "@gmail.com"))
+                .count();
+
+        // Then
+        assertThat(underTest.mightContain("customer-42@gmail.com")).isTrue();
+        assertThat(falsePositives).isLessThan(200);
+    }
+}
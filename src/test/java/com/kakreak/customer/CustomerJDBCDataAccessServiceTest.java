@@ -4,8 +4,10 @@ import com.kakreak.AbstractTestContainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -39,6 +41,50 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomers() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        List<Customer> firstPage = underTest.selectCustomers(0L, 2);
+
+        // When
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(1).getId(), 2);
+
+        // Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage).extracting(Customer::getId).isSorted();
+        assertThat(secondPage).isNotEmpty();
+        assertThat(secondPage).extracting(Customer::getId)
+                .isSorted()
+                .allMatch(id -> id > firstPage.get(1).getId());
+    }
+
+    @Test
+    void forEachCustomer() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+        underTest.insertCustomer(customer);
+        List<Customer> actual = new ArrayList<>();
+
+        // When
+        underTest.forEachCustomer(actual::add);
+
+        // Then
+        assertThat(actual).hasSameSizeAs(underTest.selectAllCustomers());
+        assertThat(actual).anyMatch(c -> c.getEmail().equals(email));
+    }
+
     @Test
     void selectCustomerById() {
 
@@ -74,7 +120,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
     @Test
     void willReturnEmptyWhenSelectCustomerById() {
         // Given
-        Integer id = 0;
+        Long id = 0L;
 
         // When
         Optional<Customer> actual = underTest.selectCustomerById(id);
@@ -105,6 +151,91 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         );
     }
 
+    @Test
+    void insertCustomerIfEmailAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        // When
+        Optional<Long> actual = underTest.insertCustomerIfEmailAbsent(customer);
+
+        // Then
+        assertThat(actual).isPresent();
+        assertThat(underTest.selectCustomerById(actual.get()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertCustomerIfEmailAbsentReturnsEmptyWhenEmailIsTaken() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        ));
+
+        // When
+        Optional<Long> actual = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                email,
+                30
+        ));
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        20
+                ),
+                new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        30
+                )
+        );
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        List<Customer> actual = underTest.selectAllCustomers();
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .containsAll(customers);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        ));
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -148,6 +279,55 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(actual).doesNotContain(customer);
     }
 
+    @Test
+    void deleteCustomerReportsWhetherRowWasDeleted() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), email, 20))
+                .orElseThrow();
+
+        // When
+        boolean deleted = underTest.deleteCustomer(id);
+        boolean deletedAgain = underTest.deleteCustomer(id);
+
+        // Then
+        assertThat(deleted).isTrue();
+        assertThat(deletedAgain).isFalse();
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        Long first = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20))
+                .orElseThrow();
+        Long second = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30))
+                .orElseThrow();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(second, -1L, first));
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactlyInAnyOrder(first, second);
+        assertThat(actual).contains(underTest.selectCustomerById(first).orElseThrow());
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), email, 20))
+                .orElseThrow();
+
+        // When
+        List<Long> actual = underTest.deleteCustomersByIds(List.of(id, -1L));
+
+        // Then
+        assertThat(actual).containsExactly(id);
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+    }
+
     @Test
     void exitsPersonWithId() {
         // Given
@@ -160,7 +340,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         underTest.insertCustomer(customer);
 
         // When
-        Integer id = underTest.selectAllCustomers()
+        Long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(customer.getEmail()))
                 .map(Customer::getId)
@@ -185,7 +365,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         underTest.insertCustomer(customer);
 
         // When
-        Integer id = underTest.selectAllCustomers()
+        Long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -224,7 +404,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         underTest.insertCustomer(customer);
 
         // When
-        Integer id = underTest.selectAllCustomers()
+        Long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -263,7 +443,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         underTest.insertCustomer(customer);
 
         // When
-        Integer id = underTest.selectAllCustomers()
+        Long id = underTest.selectAllCustomers()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -288,4 +468,217 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
             assertThat(c.getAge()).isEqualTo(newAge);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateCustomerAllFieldsInOneStatement() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        )).orElseThrow();
+
+        Customer update = new Customer(
+                id,
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                40
+        );
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.UPDATED);
+        assertThat(underTest.selectCustomerById(id)).contains(update);
+    }
+
+    @Test
+    void updateCustomerReportsUnchangedRow() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+        Long id = underTest.insertCustomerIfEmailAbsent(customer).orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName(customer.getName());
+        update.setAge(customer.getAge());
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.UNCHANGED);
+    }
+
+    @Test
+    void updateCustomerReportsMissingRow() {
+        // Given
+        Customer update = new Customer();
+        update.setId(0L);
+        update.setName(FAKER.name().fullName());
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.NOT_FOUND);
+    }
+
+    @Test
+    void selectAgeStatisticsMatchesInMemoryComputation() {
+        // Given
+        for (int age : new int[]{18, 25, 25, 40, 67}) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    age
+            ));
+        }
+        int[] ages = underTest.selectAllCustomers()
+                .stream()
+                .mapToInt(Customer::getAge)
+                .toArray();
+
+        // When
+        CustomerAgeStatistics actual = underTest.selectAgeStatistics(10);
+
+        // Then
+        assertThat(actual)
+                .usingRecursiveComparison()
+                .withEqualsForType((a, b) -> Math.abs(a - b) < 1e-9, Double.class)
+                .isEqualTo(CustomerAgeStatistics.of(ages, 10));
+    }
+
+    @Test
+    void selectVersionedCustomerByIdChangesOnlyWhenTheRowDoes() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        Long inserted = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+
+        // When
+        underTest.updateCustomer(new Customer(id, null, null, 20));
+        Long unchanged = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+        underTest.updateCustomer(new Customer(id, null, null, 21));
+        Long updated = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+        underTest.deleteCustomer(id);
+
+        // Then
+        assertThat(unchanged).isEqualTo(inserted);
+        assertThat(updated).isNotEqualTo(inserted);
+        assertThat(underTest.selectVersionedCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void selectCustomerTableVersionChangesWithEveryWrite() {
+        // Given
+        long initial = underTest.selectCustomerTableVersion();
+
+        // When
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        long inserted = underTest.selectCustomerTableVersion();
+        underTest.updateCustomer(new Customer(id, null, null, 21));
+        long updated = underTest.selectCustomerTableVersion();
+        underTest.deleteCustomer(id);
+        long deleted = underTest.selectCustomerTableVersion();
+
+        // Then
+        assertThat(inserted).isGreaterThan(initial);
+        assertThat(updated).isGreaterThan(inserted);
+        assertThat(deleted).isGreaterThan(updated);
+    }
+
+    @Test
+    void searchCustomersRanksPrefixThenSubstringThenSimilarMatches() {
+        // Given
+        String token = "q" + UUID.randomUUID().toString().substring(0, 8);
+        Long similar = insertCustomerNamed(token.substring(0, token.length() - 1) + "x");
+        Long substring = insertCustomerNamed("Anna X" + token);
+        Long prefix = insertCustomerNamed(token + "son");
+
+        // When
+        List<Customer> actual = underTest.searchCustomers(token.toUpperCase(), 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(prefix, substring, similar);
+        assertThat(underTest.searchCustomers(token, 2))
+                .extracting(Customer::getId)
+                .containsExactly(prefix, substring);
+    }
+
+    @Test
+    void searchCustomersTreatsWildcardsLiterally() {
+        // Given
+        String token = "q" + UUID.randomUUID().toString().substring(0, 8);
+        Long prefix = insertCustomerNamed(token + "%_");
+        Long substring = insertCustomerNamed("Anna X" + token + "%_");
+        // only similar, it would rank as a prefix match if % and _ were wildcards
+        Long similar = insertCustomerNamed(token + "abc");
+
+        // When
+        List<Customer> actual = underTest.searchCustomers(token + "%_", 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(prefix, substring, similar);
+    }
+
+    private Long insertCustomerNamed(String name) {
+        return underTest.insertCustomerIfEmailAbsent(new Customer(
+                name,
+                "user-" + UUID.randomUUID() + "@example.com",
+                20
+        )).orElseThrow();
+    }
+
+    @Test
+    void selectCustomersFiltersAndSortsByAge() {
+        // Given
+        String domain = UUID.randomUUID() + ".example.com";
+        Long oldest = insertCustomerAged(25, domain);
+        Long youngest = insertCustomerAged(18, domain);
+        Long middle = insertCustomerAged(21, domain);
+        insertCustomerAged(26, domain);
+        insertCustomerAged(21, "other-" + domain);
+
+        // When
+        List<Customer> ascending = underTest.selectCustomers(new CustomerQuery(18, 25, domain, CustomerSort.AGE, 0, 2));
+        List<Customer> descending = underTest.selectCustomers(new CustomerQuery(18, 25, domain, CustomerSort.AGE_DESC, 0, 10));
+        List<Customer> byId = underTest.selectCustomers(new CustomerQuery(18, 25, domain.toUpperCase(), CustomerSort.ID, oldest, 10));
+
+        // Then
+        assertThat(ascending)
+                .extracting(Customer::getId)
+                .containsExactly(youngest, middle);
+        assertThat(descending)
+                .extracting(Customer::getId)
+                .containsExactly(oldest, middle, youngest);
+        assertThat(byId)
+                .extracting(Customer::getId)
+                .containsExactly(youngest, middle);
+    }
+
+    private Long insertCustomerAged(int age, String domain) {
+        return underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                UUID.randomUUID() + "@" + domain,
+                age
+        )).orElseThrow();
+    }
+}
@@ -6,10 +6,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
@@ -40,10 +49,38 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomers() {
+        // Given
+        long afterId = 10;
+        int limit = 20;
+
+        // When
+        underTest.selectCustomers(afterId, limit);
+
+        // Then
+        verify(customerRepository).findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Test
+    void forEachCustomer() {
+        // Given
+        Customer customer = new Customer(1L, "John Doe", "john@gmail.com", 20);
+        when(customerRepository.streamAllCustomers()).thenReturn(Stream.of(customer));
+        List<Customer> actual = new ArrayList<>();
+
+        // When
+        underTest.forEachCustomer(actual::add);
+
+        // Then
+        verify(customerRepository).streamAllCustomers();
+        assertThat(actual).containsExactly(customer);
+    }
+
     @Test
     void selectCustomerById() {
         // Given
-        int id = 1;
+        long id = 1;
 
         // When
         underTest.selectCustomerById(id);
@@ -68,6 +105,62 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void insertCustomerIfEmailAbsent() {
+        // Given
+        Customer customer = new Customer(
+                "John Doe",
+                "john@gmail.com",
+                20
+        );
+
+        // When
+        underTest.insertCustomerIfEmailAbsent(customer);
+
+        // Then
+        verify(customerRepository).insertCustomerIfEmailAbsent("John Doe", "john@gmail.com", 20);
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer("John Doe", "john@gmail.com", 20),
+                new Customer("Jane Doe", "jane@gmail.com", 21)
+        );
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        verify(customerRepository).saveAll(customers);
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L);
+
+        // When
+        underTest.selectCustomersByIds(ids);
+
+        // Then
+        verify(customerRepository).findAllById(ids);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        List<String> emails = List.of("john@gmail.com", "jane@gmail.com");
+        when(customerRepository.findExistingEmails(emails)).thenReturn(List.of("john@gmail.com"));
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(emails);
+
+        // Then
+        assertThat(actual).containsExactly("john@gmail.com");
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -83,20 +176,62 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void deleteCustomer() {
         // Given
-        int id = 1;
+        long id = 1;
 
         // When
         underTest.deleteCustomer(id);
 
         // Then
-        verify(customerRepository).deleteById(id);
+        verify(customerRepository).deleteCustomerById(id);
+
+    }
+
+    @Test
+    void selectAgeStatistics() {
+        // When
+        underTest.selectAgeStatistics(10);
+
+        // Then
+        verify(customerRepository).selectAgeStatistics(10);
+    }
+
+    @Test
+    void selectCustomersWithQuery() {
+        // Given
+        CustomerQuery query = new CustomerQuery(18, 25, "example.com", CustomerSort.AGE, 0, 100);
+
+        // When
+        underTest.selectCustomers(query);
+
+        // Then
+        verify(customerRepository).selectCustomers(query);
+    }
+
+    @Test
+    void searchCustomers() {
+        // When
+        underTest.searchCustomers("mari", 20);
 
+        // Then
+        verify(customerRepository).searchCustomers("mari", 20);
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L);
+
+        // When
+        underTest.deleteCustomersByIds(ids);
+
+        // Then
+        verify(customerRepository).deleteCustomersByIds(ids);
     }
 
     @Test
     void exitsPersonWithId() {
         // Given
-        int id = 1;
+        long id = 1;
 
         // When
         underTest.exitsPersonWithId(id);
@@ -108,16 +243,33 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void updateCustomer() {
         // Given
-        Customer customer = new Customer(
+        Customer update = new Customer(1L,
                 "John Doe",
-                "doe@gmail.com",
-                20
+                null,
+                null
         );
+        when(customerRepository.updateChangedFields(update)).thenReturn(1);
 
         // When
-        underTest.updateCustomer(customer);
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
 
         // Then
-        verify(customerRepository).save(customer);
+        assertThat(actual).isEqualTo(CustomerUpdateResult.UPDATED);
+        verify(customerRepository, never()).save(any());
+    }
+
+    @Test
+    void updateCustomerReportsUnchangedAndMissingRows() {
+        // Given
+        Customer unchanged = new Customer(1L, "John Doe", null, null);
+        Customer missing = new Customer(2L, "John Doe", null, null);
+        when(customerRepository.updateChangedFields(any())).thenReturn(0);
+        when(customerRepository.existsById(1L)).thenReturn(true);
+        when(customerRepository.existsById(2L)).thenReturn(false);
+
+        // When
+        // Then
+        assertThat(underTest.updateCustomer(unchanged)).isEqualTo(CustomerUpdateResult.UNCHANGED);
+        assertThat(underTest.updateCustomer(missing)).isEqualTo(CustomerUpdateResult.NOT_FOUND);
     }
-}
\ No newline at end of file
+}
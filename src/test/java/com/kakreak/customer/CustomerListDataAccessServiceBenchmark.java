@@ -0,0 +1,126 @@
+package com.kakreak.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// mvn test-compile, then run main with the test classpath
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CustomerListDataAccessServiceBenchmark {
+
+    @Param("1000000")
+    private int customers;
+
+    private CustomerListDataAccessService indexed;
+    private ArrayListCustomerDao arrayList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        indexed = new CustomerListDataAccessService();
+        arrayList = new ArrayListCustomerDao();
+        List<Customer> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < customers; i++) {
+            batch.add(new Customer("Customer " + i, "customer" + i + "@gmail.com", 20 + i % 50));
+            if (batch.size() == 10_000) {
+                indexed.insertCustomers(batch);
+                batch.clear();
+            }
+        }
+        indexed.insertCustomers(batch);
+        indexed.forEachCustomer(arrayList.customers::add);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByIdIndexed() {
+        return indexed.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByIdArrayList() {
+        return arrayList.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmailIndexed() {
+        return indexed.existsPersonWithEmail(randomEmail());
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmailArrayList() {
+        return arrayList.existsPersonWithEmail(randomEmail());
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomersIndexed() {
+        return indexed.selectCustomers(randomId(), 100);
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomersArrayList() {
+        return arrayList.selectCustomers(randomId(), 100);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextInt(1, customers + 3);
+    }
+
+    private String randomEmail() {
+        return "customer" + ThreadLocalRandom.current().nextInt(customers) + "@gmail.com";
+    }
+
+    // the read path of the ArrayList backed CustomerListDataAccessService this replaced
+    static class ArrayListCustomerDao {
+
+        private final List<Customer> customers = new ArrayList<>();
+
+        List<Customer> selectCustomers(Long afterId, int limit) {
+            return customers.stream()
+                    .filter(customer -> customer.getId() > afterId)
+                    .sorted(Comparator.comparing(Customer::getId))
+                    .limit(limit)
+                    .toList();
+        }
+
+        Optional<Customer> selectCustomerById(Long id) {
+            return customers.stream()
+                    .filter(customer -> customer.getId().equals(id))
+                    .findFirst();
+        }
+
+        boolean existsPersonWithEmail(String email) {
+            return customers.stream()
+                    .anyMatch(c -> c.getEmail().equals(email));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomerListDataAccessServiceBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,374 @@
+package com.kakreak.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void selectCustomerById() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).contains(new Customer(id, "Bob", "bob@gmail.com", 30));
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(id, -1L, 1L));
+
+        // Then
+        assertThat(actual).containsExactly(
+                new Customer(id, "Bob", "bob@gmail.com", 30),
+                underTest.selectCustomerById(1L).orElseThrow()
+        );
+    }
+
+    @Test
+    void selectCustomersPagesInIdOrder() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomer(new Customer("Customer " + i, "customer" + i + "@gmail.com", 20));
+        }
+        List<Customer> firstPage = underTest.selectCustomers(0L, 3);
+
+        // When
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(2).getId(), 3);
+
+        // Then
+        assertThat(firstPage).extracting(Customer::getId).containsExactly(1L, 2L, 3L);
+        assertThat(secondPage).extracting(Customer::getId).containsExactly(4L, 5L, 6L);
+    }
+
+    @Test
+    void insertCustomerIfEmailAbsentRejectsTakenEmail() {
+        // When
+        Optional<Long> actual = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 40));
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void insertCustomersIsAllOrNothing() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer("Bob", "bob@gmail.com", 30),
+                new Customer("Alex", "alex@gmail.com", 40)
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomers(customers))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.existsPersonWithEmail("bob@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of("alex@gmail.com", "bob@gmail.com"));
+
+        // Then
+        assertThat(actual).containsExactly("alex@gmail.com");
+    }
+
+    @Test
+    void updateCustomerReplacesRowAndEmailIndex() {
+        // Given
+        Customer update = new Customer(1L, null, "alex@hotmail.com", null);
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.UPDATED);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.selectCustomerById(1L))
+                .contains(new Customer(1L, "Alex", "alex@hotmail.com", 21));
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alex@hotmail.com")).isTrue();
+    }
+
+    @Test
+    void updateCustomerReportsUnchangedAndNotFound() {
+        // When
+        CustomerUpdateResult unchanged = underTest.updateCustomer(new Customer(1L, "Alex", null, 21));
+        CustomerUpdateResult notFound = underTest.updateCustomer(new Customer(99L, "Bob", null, null));
+
+        // Then
+        assertThat(unchanged).isEqualTo(CustomerUpdateResult.UNCHANGED);
+        assertThat(notFound).isEqualTo(CustomerUpdateResult.NOT_FOUND);
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerTakesExistingEmail() {
+        // Given
+        Customer update = new Customer(1L, null, "jamila@gmail.com", null);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+    }
+
+    @Test
+    void deleteCustomerFreesEmail() {
+        // When
+        boolean deleted = underTest.deleteCustomer(1L);
+        boolean deletedAgain = underTest.deleteCustomer(1L);
+
+        // Then
+        assertThat(deleted).isTrue();
+        assertThat(deletedAgain).isFalse();
+        assertThat(underTest.exitsPersonWithId(1L)).isFalse();
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+    }
+
+    @Test
+    void concurrentRegistrationsOfOneEmailInsertOnce() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Optional<Long>>> futures;
+
+        // When
+        try {
+            futures = executor.invokeAll(IntStream.range(0, 64)
+                    .<Callable<Optional<Long>>>mapToObj(i ->
+                            () -> underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", i)))
+                    .toList());
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        long inserted = 0;
+        for (Future<Optional<Long>> future : futures) {
+            inserted += future.get().isPresent() ? 1 : 0;
+        }
+        assertThat(inserted).isEqualTo(1);
+        assertThat(underTest.selectAllCustomers()).hasSize(3);
+    }
+
+    @Test
+    void selectAgeStatistics() {
+        // Given
+        for (int age : new int[]{18, 25, 40, 67}) {
+            underTest.insertCustomer(new Customer("Customer " + age, "customer" + age + "@gmail.com", age));
+        }
+
+        // When
+        CustomerAgeStatistics actual = underTest.selectAgeStatistics(10);
+
+        // Then ages are 18, 20, 21, 25, 40, 67
+        assertThat(actual.count()).isEqualTo(6);
+        assertThat(actual.min()).isEqualTo(18);
+        assertThat(actual.max()).isEqualTo(67);
+        assertThat(actual.mean()).isEqualTo(191 / 6.0);
+        assertThat(actual.p50()).isEqualTo(23.0);
+        assertThat(actual.p90()).isEqualTo(53.5);
+        assertThat(actual.histogram()).containsExactly(
+                new CustomerAgeStatistics.AgeBucket(10, 20, 1),
+                new CustomerAgeStatistics.AgeBucket(20, 30, 3),
+                new CustomerAgeStatistics.AgeBucket(40, 50, 1),
+                new CustomerAgeStatistics.AgeBucket(60, 70, 1)
+        );
+    }
+
+    @Test
+    void selectAgeStatisticsOfEmptyStore() {
+        // Given
+        underTest.deleteCustomersByIds(List.of(1L, 2L));
+
+        // When
+        CustomerAgeStatistics actual = underTest.selectAgeStatistics(10);
+
+        // Then
+        assertThat(actual.count()).isZero();
+        assertThat(actual.mean()).isNull();
+        assertThat(actual.histogram()).isEmpty();
+    }
+
+    @Test
+    void selectVersionedCustomerByIdChangesOnlyWhenTheRowDoes() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+        Long inserted = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+
+        // When
+        underTest.updateCustomer(new Customer(id, "Bob", null, null));
+        Long unchanged = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+        underTest.updateCustomer(new Customer(id, null, null, 31));
+        Long updated = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+        underTest.deleteCustomer(id);
+
+        // Then
+        assertThat(unchanged).isEqualTo(inserted);
+        assertThat(updated).isNotEqualTo(inserted);
+        assertThat(underTest.selectVersionedCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void selectCustomerTableVersionChangesWithEveryWrite() {
+        // Given
+        long initial = underTest.selectCustomerTableVersion();
+
+        // When
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+        long inserted = underTest.selectCustomerTableVersion();
+        underTest.updateCustomer(new Customer(id, null, null, 31));
+        long updated = underTest.selectCustomerTableVersion();
+        underTest.deleteCustomer(id);
+        long deleted = underTest.selectCustomerTableVersion();
+
+        // Then
+        assertThat(List.of(initial, inserted, updated, deleted)).doesNotHaveDuplicates();
+        assertThat(underTest.selectCustomerTableVersion()).isEqualTo(deleted);
+    }
+
+    @Test
+    void searchCustomersRanksPrefixThenSubstringThenSimilarMatches() {
+        // Given
+        Long similar = underTest.insertCustomerIfEmailAbsent(new Customer("Mary", "m.jones@gmail.com", 30))
+                .orElseThrow();
+        Long substring = underTest.insertCustomerIfEmailAbsent(new Customer("Anna Mariani", "anna@gmail.com", 30))
+                .orElseThrow();
+        Long prefix = underTest.insertCustomerIfEmailAbsent(new Customer("Marianne Smith", "smith@gmail.com", 30))
+                .orElseThrow();
+        underTest.insertCustomer(new Customer("Bob", "bob@gmail.com", 30));
+
+        // When
+        List<Customer> actual = underTest.searchCustomers("Mari", 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(prefix, substring, similar);
+    }
+
+    @Test
+    void searchCustomersMatchesEmailsAndRespectsTheLimit() {
+        // Given
+        Long first = underTest.insertCustomerIfEmailAbsent(new Customer("Alice", "robert.one@gmail.com", 30))
+                .orElseThrow();
+        Long second = underTest.insertCustomerIfEmailAbsent(new Customer("Carol", "robert.two@gmail.com", 30))
+                .orElseThrow();
+        underTest.insertCustomer(new Customer("Dave", "robert.three@gmail.com", 30));
+
+        // When
+        List<Customer> actual = underTest.searchCustomers("robert", 2);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(first, second);
+    }
+
+    @Test
+    void searchCustomersSeesUpdatesAndDeletes() {
+        // Given
+        Long renamed = underTest.insertCustomerIfEmailAbsent(new Customer("Marianne", "marianne@gmail.com", 30))
+                .orElseThrow();
+        Long deleted = underTest.insertCustomerIfEmailAbsent(new Customer("Mariana", "mariana@gmail.com", 30))
+                .orElseThrow();
+        Long found = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+
+        // When
+        underTest.updateCustomer(new Customer(renamed, "Zoe", "zoe@gmail.com", null));
+        underTest.deleteCustomer(deleted);
+        underTest.updateCustomer(new Customer(found, "Mariam", null, null));
+
+        // Then
+        assertThat(underTest.searchCustomers("mari", 10))
+                .containsExactly(new Customer(found, "Mariam", "bob@gmail.com", 30));
+        assertThat(underTest.searchCustomers("zoe", 10))
+                .extracting(Customer::getId)
+                .containsExactly(renamed);
+    }
+
+    @Test
+    void selectCustomersKeepsTheTopOfAnAgeRange() {
+        // Given
+        Long oldest = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 25))
+                .orElseThrow();
+        Long youngest = underTest.insertCustomerIfEmailAbsent(new Customer("Carol", "carol@gmail.com", 18))
+                .orElseThrow();
+        Long middle = underTest.insertCustomerIfEmailAbsent(new Customer("Dave", "dave@gmail.com", 19))
+                .orElseThrow();
+        underTest.insertCustomer(new Customer("Erin", "erin@gmail.com", 26));
+        underTest.insertCustomer(new Customer("Frank", "frank@gmail.com", 17));
+
+        // When
+        List<Customer> ascending = underTest.selectCustomers(new CustomerQuery(18, 25, null, CustomerSort.AGE, 0, 3));
+        List<Customer> descending = underTest.selectCustomers(new CustomerQuery(18, 25, null, CustomerSort.AGE_DESC, 0, 2));
+
+        // Then
+        // the seeded Jamila is 20 and Alex 21
+        assertThat(ascending)
+                .extracting(Customer::getId)
+                .containsExactly(youngest, middle, 2L);
+        assertThat(descending)
+                .extracting(Customer::getId)
+                .containsExactly(oldest, 1L);
+    }
+
+    @Test
+    void selectCustomersFiltersByEmailDomainPastTheCursor() {
+        // Given
+        Long first = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@Example.com", 30))
+                .orElseThrow();
+        underTest.insertCustomer(new Customer("Carol", "carol@example.org", 30));
+        underTest.insertCustomer(new Customer("Dave", "dave@mail.example.com", 30));
+        Long second = underTest.insertCustomerIfEmailAbsent(new Customer("Erin", "erin@example.com", 30))
+                .orElseThrow();
+
+        // When
+        List<Customer> firstPage = underTest.selectCustomers(new CustomerQuery(null, null, "example.com", CustomerSort.ID, 0, 1));
+        List<Customer> secondPage = underTest.selectCustomers(new CustomerQuery(null, null, "example.com", CustomerSort.ID, first, 1));
+
+        // Then
+        assertThat(firstPage)
+                .extracting(Customer::getId)
+                .containsExactly(first);
+        assertThat(secondPage)
+                .extracting(Customer::getId)
+                .containsExactly(second);
+    }
+}
@@ -0,0 +1,151 @@
+package com.kakreak.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerListResponseCacheTest {
+
+    private static final List<Customer> CUSTOMERS = List.of(
+            new Customer(1L, "Alex", "alex@gmail.com", 21),
+            new Customer(2L, "Jamila", "jamila@gmail.com", 20)
+    );
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<List<Customer>> body = () -> {
+        loads.incrementAndGet();
+        return CUSTOMERS;
+    };
+    private CustomerListResponseCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListResponseCache(objectMapper, new SimpleMeterRegistry(), DataSize.ofMegabytes(1));
+    }
+
+    @Test
+    void theBodyIsOnlyProducedOncePerVersion() throws IOException {
+        // When
+        MockHttpServletResponse first = get(1, null, null);
+        MockHttpServletResponse second = get(1, null, null);
+        MockHttpServletResponse changed = get(2, null, null);
+
+        // Then
+        assertThat(loads).hasValue(2);
+        assertThat(first.getContentAsByteArray()).isEqualTo(objectMapper.writeValueAsBytes(CUSTOMERS));
+        assertThat(second.getContentAsByteArray()).isEqualTo(first.getContentAsByteArray());
+        assertThat(first.getHeader(HttpHeaders.ETAG)).isEqualTo("\"1\"");
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isEqualTo("\"2\"");
+    }
+
+    @Test
+    void invalidateAllDropsTheCachedBytes() throws IOException {
+        // Given
+        get(1, null, null);
+
+        // When
+        underTest.invalidateAll();
+        get(1, null, null);
+
+        // Then
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void gzipIsServedToClientsThatAcceptIt() throws IOException {
+        // When
+        MockHttpServletResponse actual = get(1, "gzip, deflate", null);
+
+        // Then
+        assertThat(actual.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(actual.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(actual.getHeader(HttpHeaders.ETAG)).isEqualTo("\"1-gzip\"");
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(actual.getContentAsByteArray()))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(objectMapper.writeValueAsBytes(CUSTOMERS));
+        }
+    }
+
+    @Test
+    void encodingsRefusedWithZeroQualityAreNotServed() throws IOException {
+        // When
+        MockHttpServletResponse actual = get(1, "gzip;q=0, br;q=0", null);
+
+        // Then
+        assertThat(actual.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(actual.getContentAsByteArray()).isEqualTo(objectMapper.writeValueAsBytes(CUSTOMERS));
+    }
+
+    @Test
+    void theWildcardDoesNotOverrideAnExplicitRefusal() {
+        assertThat(CustomerListResponseCache.Encoding.negotiate("gzip;q=0, *", true))
+                .isEqualTo(CustomerListResponseCache.Encoding.IDENTITY);
+        assertThat(CustomerListResponseCache.Encoding.negotiate("*, gzip;q=0", true))
+                .isEqualTo(CustomerListResponseCache.Encoding.IDENTITY);
+        assertThat(CustomerListResponseCache.Encoding.negotiate("br;q=0, *;q=0.5", true))
+                .isEqualTo(CustomerListResponseCache.Encoding.GZIP);
+        assertThat(CustomerListResponseCache.Encoding.negotiate("gzip, *;q=0", true))
+                .isEqualTo(CustomerListResponseCache.Encoding.GZIP);
+    }
+
+    @Test
+    void eachEncodingIsCompressedFromTheSameSerializedBody() throws IOException {
+        // When
+        MockHttpServletResponse plain = get(1, null, null);
+        MockHttpServletResponse gzipped = get(1, "gzip", null);
+
+        // Then
+        assertThat(loads).hasValue(1);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(plain.getContentAsByteArray());
+        }
+    }
+
+    @Test
+    void brotliIsPreferredWhenTheClientAcceptsIt() {
+        assertThat(CustomerListResponseCache.Encoding.negotiate("gzip, br", true))
+                .isEqualTo(CustomerListResponseCache.Encoding.BROTLI);
+        assertThat(CustomerListResponseCache.Encoding.negotiate("gzip, br", false))
+                .isEqualTo(CustomerListResponseCache.Encoding.GZIP);
+        assertThat(CustomerListResponseCache.Encoding.negotiate("identity", true))
+                .isEqualTo(CustomerListResponseCache.Encoding.IDENTITY);
+    }
+
+    @Test
+    void aMatchingETagIsAnsweredWithoutTheBody() throws IOException {
+        // When
+        MockHttpServletResponse actual = get(1, null, "\"1\"");
+
+        // Then
+        assertThat(actual.getStatus()).isEqualTo(304);
+        assertThat(actual.getContentAsByteArray()).isEmpty();
+        assertThat(loads).hasValue(0);
+    }
+
+    private MockHttpServletResponse get(long version, String acceptEncoding, String ifNoneMatch) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        underTest.write("all", version, body, request, response);
+        return response;
+    }
+}
@@ -9,6 +9,8 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ApplicationContext;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -39,7 +41,7 @@ class CustomerRepositoryTest extends AbstractTestContainers {
         );
         underTest.save(customer);
 
-        int id = underTest.findAll()
+        long id = underTest.findAll()
                 .stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
@@ -52,4 +54,131 @@ class CustomerRepositoryTest extends AbstractTestContainers {
         // Then
         assertThat(expected).isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    void insertCustomerIfEmailAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        Optional<Long> inserted = underTest.insertCustomerIfEmailAbsent(FAKER.name().fullName(), email, 20);
+        Optional<Long> duplicate = underTest.insertCustomerIfEmailAbsent(FAKER.name().fullName(), email, 30);
+
+        // Then
+        assertThat(inserted).isPresent();
+        assertThat(duplicate).isEmpty();
+        assertThat(underTest.findById(inserted.get()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(20));
+    }
+
+    @Test
+    void updateChangedFields() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(FAKER.name().fullName(), email, 20).orElseThrow();
+
+        Customer changeAge = new Customer(id, null, null, 30);
+        Customer sameAge = new Customer(id, null, email, 30);
+
+        // When
+        int changed = underTest.updateChangedFields(changeAge);
+        int unchanged = underTest.updateChangedFields(sameAge);
+
+        // Then
+        assertThat(changed).isEqualTo(1);
+        assertThat(unchanged).isZero();
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(FAKER.name().fullName(), email, 20).orElseThrow();
+
+        // When
+        List<Long> deleted = underTest.deleteCustomersByIds(List.of(id, -1L));
+
+        // Then
+        assertThat(deleted).containsExactly(id);
+        assertThat(underTest.existsById(id)).isFalse();
+    }
+
+    @Test
+    void selectAgeStatistics() {
+        // Given
+        for (int age : new int[]{18, 25, 25, 40, 67}) {
+            underTest.insertCustomerIfEmailAbsent(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    age);
+        }
+        int[] ages = underTest.findAll()
+                .stream()
+                .mapToInt(Customer::getAge)
+                .toArray();
+
+        // When
+        CustomerAgeStatistics actual = underTest.selectAgeStatistics(10);
+
+        // Then
+        assertThat(actual)
+                .usingRecursiveComparison()
+                .withEqualsForType((a, b) -> Math.abs(a - b) < 1e-9, Double.class)
+                .isEqualTo(CustomerAgeStatistics.of(ages, 10));
+    }
+
+    @Test
+    void searchCustomers() {
+        // Given
+        String token = "q" + UUID.randomUUID().toString().substring(0, 8);
+        Long similar = insertCustomerNamed(token.substring(0, token.length() - 1) + "x");
+        Long substring = insertCustomerNamed("Anna X" + token);
+        Long prefix = insertCustomerNamed(token + "son");
+
+        // When
+        List<Customer> actual = underTest.searchCustomers(token, 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(prefix, substring, similar);
+    }
+
+    private Long insertCustomerNamed(String name) {
+        return underTest.insertCustomerIfEmailAbsent(name, "user-" + UUID.randomUUID() + "@example.com", 20)
+                .orElseThrow();
+    }
+
+    @Test
+    void selectCustomers() {
+        // Given
+        String domain = UUID.randomUUID() + ".example.com";
+        Long oldest = insertCustomerAged(25, domain);
+        Long youngest = insertCustomerAged(18, domain);
+        Long middle = insertCustomerAged(21, domain);
+        insertCustomerAged(26, domain);
+        insertCustomerAged(21, "other-" + domain);
+
+        // When
+        List<Customer> ascending = underTest.selectCustomers(new CustomerQuery(18, 25, domain, CustomerSort.AGE, 0, 2));
+        List<Customer> descending = underTest.selectCustomers(new CustomerQuery(18, 25, domain, CustomerSort.AGE_DESC, 0, 10));
+        List<Customer> byId = underTest.selectCustomers(new CustomerQuery(18, 25, domain.toUpperCase(), CustomerSort.ID, oldest, 10));
+
+        // Then
+        assertThat(ascending)
+                .extracting(Customer::getId)
+                .containsExactly(youngest, middle);
+        assertThat(descending)
+                .extracting(Customer::getId)
+                .containsExactly(oldest, middle, youngest);
+        assertThat(byId)
+                .extracting(Customer::getId)
+                .containsExactly(youngest, middle);
+    }
+
+    private Long insertCustomerAged(int age, String domain) {
+        return underTest.insertCustomerIfEmailAbsent(FAKER.name().fullName(), UUID.randomUUID() + "@" + domain, age)
+                .orElseThrow();
+    }
+}
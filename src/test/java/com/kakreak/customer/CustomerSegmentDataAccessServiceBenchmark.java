@@ -0,0 +1,123 @@
+package com.kakreak.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// point reads and writes of the segment dao against the jdbc dao, needs a postgres at
+// -Dbenchmark.jdbc.url (defaults to the one in application.yml)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5332/customer",
+        "-Dbenchmark.jdbc.username=postgres",
+        "-Dbenchmark.jdbc.password=1234"
+})
+public class CustomerSegmentDataAccessServiceBenchmark {
+
+    @Param("100000")
+    private int customers;
+
+    private Path directory;
+    private HikariDataSource dataSource;
+    private CustomerSegmentDataAccessService segment;
+    private CustomerJDBCDataAccessService jdbc;
+    private List<Long> segmentIds;
+    private List<Long> jdbcIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("customer-segments");
+        segment = new CustomerSegmentDataAccessService(directory, DataSize.ofMegabytes(16), Duration.ofMinutes(1), false);
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.jdbc.url"));
+        dataSource.setUsername(System.getProperty("benchmark.jdbc.username"));
+        dataSource.setPassword(System.getProperty("benchmark.jdbc.password"));
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbc = new CustomerJDBCDataAccessService(new JdbcTemplate(dataSource), new CustomerRowMapper());
+
+        List<Customer> batch = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            batch.add(newCustomer());
+        }
+        segment.insertCustomers(batch);
+        jdbc.insertCustomers(batch);
+        segmentIds = segment.selectAllCustomers().stream().map(Customer::getId).toList();
+        jdbcIds = jdbc.selectAllCustomers().stream().map(Customer::getId).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        segment.destroy();
+        dataSource.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByIdSegment() {
+        return segment.selectCustomerById(random(segmentIds));
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerByIdJdbc() {
+        return jdbc.selectCustomerById(random(jdbcIds));
+    }
+
+    @Benchmark
+    public Optional<Long> insertCustomerSegment() {
+        return segment.insertCustomerIfEmailAbsent(newCustomer());
+    }
+
+    @Benchmark
+    public Optional<Long> insertCustomerJdbc() {
+        return jdbc.insertCustomerIfEmailAbsent(newCustomer());
+    }
+
+    private static Long random(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static Customer newCustomer() {
+        return new Customer("Customer", UUID.randomUUID() + "@gmail.com", 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomerSegmentDataAccessServiceBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
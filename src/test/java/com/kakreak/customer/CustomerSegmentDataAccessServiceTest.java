@@ -0,0 +1,858 @@
+package com.kakreak.customer;
+
+import net.datafaker.Faker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerSegmentDataAccessServiceTest {
+
+    private static final Faker FAKER = new Faker();
+
+    @TempDir
+    private Path directory;
+    private CustomerSegmentDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        underTest = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        underTest.destroy();
+    }
+
+    @Test
+    void selectAllCustomers() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+        underTest.insertCustomer(customer);
+
+        // When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        // Then
+        assertThat(actual).isNotEmpty();
+    }
+
+    @Test
+    void selectCustomers() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        List<Customer> firstPage = underTest.selectCustomers(0L, 2);
+
+        // When
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(1).getId(), 2);
+
+        // Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage).extracting(Customer::getId).isSorted();
+        assertThat(secondPage).isNotEmpty();
+        assertThat(secondPage).extracting(Customer::getId)
+                .isSorted()
+                .allMatch(id -> id > firstPage.get(1).getId());
+    }
+
+    @Test
+    void forEachCustomer() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+        underTest.insertCustomer(customer);
+        List<Customer> actual = new ArrayList<>();
+
+        // When
+        underTest.forEachCustomer(actual::add);
+
+        // Then
+        assertThat(actual).hasSameSizeAs(underTest.selectAllCustomers());
+        assertThat(actual).anyMatch(c -> c.getEmail().equals(email));
+    }
+
+    @Test
+    void selectCustomerById() {
+
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+        underTest.insertCustomer(customer);
+
+        underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .ifPresent(integer -> {
+
+                    // When
+                    Optional<Customer> actual = underTest.selectCustomerById(integer);
+
+                    // Then
+                    assertThat(actual).isPresent().hasValueSatisfying(c -> {
+                        assertThat(c.getId()).isEqualTo(integer);
+                        assertThat(c.getName()).isEqualTo(customer.getName());
+                        assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+                        assertThat(c.getAge()).isEqualTo(customer.getAge());
+                    });
+                });
+    }
+
+    @Test
+    void willReturnEmptyWhenSelectCustomerById() {
+        // Given
+        Long id = 0L;
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).isNotPresent();
+    }
+
+    @Test
+    void insertCustomer() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        List<Customer> actual = underTest.selectAllCustomers();
+        assertThat(actual).isNotEmpty();
+        assertThat(actual).anyMatch(
+                c -> c.getName().equals(customer.getName())
+                        && c.getEmail().equals(customer.getEmail())
+                        && c.getAge().equals(customer.getAge())
+        );
+    }
+
+    @Test
+    void insertCustomerIfEmailAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        // When
+        Optional<Long> actual = underTest.insertCustomerIfEmailAbsent(customer);
+
+        // Then
+        assertThat(actual).isPresent();
+        assertThat(underTest.selectCustomerById(actual.get()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertCustomerIfEmailAbsentReturnsEmptyWhenEmailIsTaken() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        ));
+
+        // When
+        Optional<Long> actual = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                email,
+                30
+        ));
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        20
+                ),
+                new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        30
+                )
+        );
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        List<Customer> actual = underTest.selectAllCustomers();
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .containsAll(customers);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        ));
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
+    @Test
+    void existsPersonWithEmail() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        boolean actual = underTest.existsPersonWithEmail(email);
+        assertThat(actual).isTrue();
+
+    }
+
+    @Test
+    void deleteCustomer() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .ifPresent(id -> underTest.deleteCustomer(id));
+
+        // Then
+        List<Customer> actual = underTest.selectAllCustomers();
+        assertThat(actual).doesNotContain(customer);
+    }
+
+    @Test
+    void deleteCustomerReportsWhetherRowWasDeleted() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), email, 20))
+                .orElseThrow();
+
+        // When
+        boolean deleted = underTest.deleteCustomer(id);
+        boolean deletedAgain = underTest.deleteCustomer(id);
+
+        // Then
+        assertThat(deleted).isTrue();
+        assertThat(deletedAgain).isFalse();
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        Long first = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20))
+                .orElseThrow();
+        Long second = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30))
+                .orElseThrow();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(second, -1L, first));
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactlyInAnyOrder(first, second);
+        assertThat(actual).contains(underTest.selectCustomerById(first).orElseThrow());
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), email, 20))
+                .orElseThrow();
+
+        // When
+        List<Long> actual = underTest.deleteCustomersByIds(List.of(id, -1L));
+
+        // Then
+        assertThat(actual).containsExactly(id);
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void exitsPersonWithId() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+
+        underTest.insertCustomer(customer);
+
+        // When
+        Long id = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // Then
+        boolean actual = underTest.exitsPersonWithId(id);
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void updateCustomerName() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        underTest.insertCustomer(customer);
+
+        // When
+        Long id = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        String newName = FAKER.name().fullName();
+
+        Customer update = new Customer();
+        update.setName(newName);
+        update.setId(id);
+
+        underTest.updateCustomer(update);
+
+        // Then
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(newName);
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    void updateCustomerEmail() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        underTest.insertCustomer(customer);
+
+        // When
+        Long id = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        String newEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        Customer update = new Customer();
+        update.setEmail(newEmail);
+        update.setId(id);
+
+        underTest.updateCustomer(update);
+
+        // Then
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(newEmail);
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    void updateCustomerAge() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        underTest.insertCustomer(customer);
+
+        // When
+        Long id = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        Integer newAge = 30;
+
+        Customer update = new Customer();
+        update.setAge(newAge);
+        update.setId(id);
+
+        underTest.updateCustomer(update);
+
+        // Then
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(newAge);
+        });
+    }
+
+    @Test
+    void updateCustomerAllFieldsInOneStatement() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        )).orElseThrow();
+
+        Customer update = new Customer(
+                id,
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                40
+        );
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.UPDATED);
+        assertThat(underTest.selectCustomerById(id)).contains(update);
+    }
+
+    @Test
+    void updateCustomerReportsUnchangedRow() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+        Long id = underTest.insertCustomerIfEmailAbsent(customer).orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName(customer.getName());
+        update.setAge(customer.getAge());
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.UNCHANGED);
+    }
+
+    @Test
+    void updateCustomerReportsMissingRow() {
+        // Given
+        Customer update = new Customer();
+        update.setId(0L);
+        update.setName(FAKER.name().fullName());
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerUpdateResult.NOT_FOUND);
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerTakesExistingEmail() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                30
+        )).orElseThrow();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(id, null, email, null)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void replaysSegmentsOnRestart() throws IOException {
+        // Given
+        Long kept = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 21))
+                .orElseThrow();
+        Long deleted = underTest.insertCustomerIfEmailAbsent(new Customer("Jamila", "jamila@gmail.com", 20))
+                .orElseThrow();
+        underTest.updateCustomer(new Customer(kept, null, "alex@hotmail.com", 22));
+        underTest.deleteCustomer(deleted);
+
+        // When
+        underTest.destroy();
+        underTest = open();
+
+        // Then
+        assertThat(underTest.selectAllCustomers())
+                .containsExactly(new Customer(kept, "Alex", "alex@hotmail.com", 22));
+        assertThat(underTest.existsPersonWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("jamila@gmail.com")).isFalse();
+        assertThat(underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30)))
+                .contains(deleted + 1L);
+    }
+
+    @Test
+    void ignoresTornRecordAtTheEndOfTheLog() throws IOException {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 21))
+                .orElseThrow();
+        underTest.destroy();
+        Path segment = segmentFiles().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // a frame header right after the last id and the first record, whose body never made it to disk
+            file.seek(CustomerLogSegment.FRAME_HEADER_BYTES + 1 + 8
+                    + CustomerLogSegment.FRAME_HEADER_BYTES + 1 + 8 + 4 + 4 + "Alex".length() + 4 + "alex@gmail.com".length());
+            file.writeInt(24);
+            file.writeInt(42);
+        }
+
+        // When
+        underTest = open();
+        Long bob = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+        underTest.destroy();
+        underTest = open();
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(id, bob);
+    }
+
+    @Test
+    void compactionDropsGarbageSegmentsAndKeepsLiveCustomers() throws IOException {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(underTest.insertCustomerIfEmailAbsent(new Customer(
+                    "Customer " + i,
+                    "customer" + i + "@gmail.com",
+                    20
+            )).orElseThrow());
+        }
+        for (int i = 0; i < 190; i++) {
+            underTest.deleteCustomer(ids.get(i));
+        }
+        // rolling also starts a compaction in the background, the version counts every segment created
+        long segmentsCreated = (underTest.selectCustomerTableVersion() >>> 32) + 1;
+
+        // When
+        underTest.compact();
+        underTest.destroy();
+        underTest = open();
+
+        // Then
+        assertThat((long) segmentFiles().size()).isLessThan(segmentsCreated);
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getId)
+                .containsExactlyElementsOf(ids.subList(190, 200));
+        assertThat(underTest.existsPersonWithEmail("customer0@gmail.com")).isFalse();
+        assertThat(underTest.existsPersonWithEmail("customer199@gmail.com")).isTrue();
+    }
+
+    @Test
+    void compactionDropsTombstonesOnceNoOlderSegmentHoldsTheRow() throws IOException {
+        // Given
+        Long kept = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 21))
+                .orElseThrow();
+        List<Long> alive = insertUntilSegment(1, "alive");
+        List<Long> deleted = insertUntilSegment(2, "deleted");
+        // the insert that opened the second segment went into it
+        deleted.add(alive.remove(alive.size() - 1));
+        deleted.forEach(underTest::deleteCustomer);
+        updateUntilSegment(3, kept);
+        long versionBefore = underTest.selectCustomerTableVersion();
+
+        // When
+        underTest.compact();
+        long versionAfter = underTest.selectCustomerTableVersion();
+        underTest.destroy();
+        underTest = open();
+
+        // Then
+        // the first segment is still live and never held the deleted rows, so nothing had to be copied
+        assertThat(versionAfter).isEqualTo(versionBefore);
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getId)
+                .containsExactlyInAnyOrderElementsOf(Stream.concat(Stream.of(kept), alive.stream()).toList());
+    }
+
+    @Test
+    void idsAreNotReusedAfterCompactionAndRestart() throws IOException {
+        // Given
+        Long kept = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 21))
+                .orElseThrow();
+        Long deleted = underTest.insertCustomerIfEmailAbsent(new Customer("Jamila", "jamila@gmail.com", 20))
+                .orElseThrow();
+        underTest.deleteCustomer(deleted);
+        updateUntilSegment(2, kept);
+
+        // When
+        underTest.compact();
+        underTest.destroy();
+        underTest = open();
+        Optional<Long> actual = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30));
+
+        // Then
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(actual).contains(deleted + 1L);
+    }
+
+    @Test
+    void replayLeavesADamagedSealedSegmentAsItIs() throws IOException {
+        // Given
+        List<Long> ids = insertUntilSegment(1, "customer");
+        underTest.destroy();
+        Path sealed = segmentFiles().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(sealed.toFile(), "rw")) {
+            // the last byte of the first customer's email
+            file.seek(CustomerLogSegment.FRAME_HEADER_BYTES + 1 + 8
+                    + CustomerLogSegment.FRAME_HEADER_BYTES + 1 + 8 + 4 + 4 + "Customer 0".length() + 4 + "customer0@gmail.com".length() - 1);
+            file.write('x');
+        }
+        byte[] damaged = Files.readAllBytes(sealed);
+
+        // When
+        underTest = open();
+
+        // Then
+        assertThat(Files.readAllBytes(sealed)).isEqualTo(damaged);
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getId)
+                .containsExactly(ids.get(ids.size() - 1));
+    }
+
+    @Test
+    void selectAgeStatisticsReadsAgesFromSegments() {
+        // Given
+        for (int age : new int[]{18, 25, 25, 40, 67}) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    age
+            ));
+        }
+
+        // When
+        CustomerAgeStatistics actual = underTest.selectAgeStatistics(10);
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerAgeStatistics.of(new int[]{18, 25, 25, 40, 67}, 10));
+    }
+
+    private CustomerSegmentDataAccessService open() throws IOException {
+        return new CustomerSegmentDataAccessService(directory, DataSize.ofKilobytes(4), Duration.ofHours(1), false);
+    }
+
+    // inserts customers until one of them opens the segment with the given sequence
+    private List<Long> insertUntilSegment(long sequence, String prefix) {
+        List<Long> ids = new ArrayList<>();
+        while (underTest.selectCustomerTableVersion() >>> 32 < sequence) {
+            ids.add(underTest.insertCustomerIfEmailAbsent(new Customer(
+                    "Customer " + ids.size(),
+                    prefix + ids.size() + "@gmail.com",
+                    20
+            )).orElseThrow());
+        }
+        return ids;
+    }
+
+    private void updateUntilSegment(long sequence, Long id) {
+        for (int age = 0; underTest.selectCustomerTableVersion() >>> 32 < sequence; age++) {
+            underTest.updateCustomer(new Customer(id, null, null, age % 2 == 0 ? 30 : 31));
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void selectVersionedCustomerByIdChangesOnlyWhenTheRowDoes() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        Long inserted = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+
+        // When
+        underTest.updateCustomer(new Customer(id, null, null, 20));
+        Long unchanged = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+        underTest.updateCustomer(new Customer(id, null, null, 21));
+        Long updated = underTest.selectVersionedCustomerById(id).orElseThrow().version();
+        underTest.deleteCustomer(id);
+
+        // Then
+        assertThat(unchanged).isEqualTo(inserted);
+        assertThat(updated).isNotEqualTo(inserted);
+        assertThat(underTest.selectVersionedCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void selectCustomerTableVersionKeepsGrowingAcrossRestarts() throws IOException {
+        // Given
+        long initial = underTest.selectCustomerTableVersion();
+        Long id = underTest.insertCustomerIfEmailAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+        long inserted = underTest.selectCustomerTableVersion();
+
+        // When
+        underTest.destroy();
+        underTest = open();
+        long reopened = underTest.selectCustomerTableVersion();
+        underTest.deleteCustomer(id);
+
+        // Then
+        assertThat(inserted).isGreaterThan(initial);
+        assertThat(reopened).isEqualTo(inserted);
+        assertThat(underTest.selectCustomerTableVersion()).isGreaterThan(reopened);
+    }
+
+    @Test
+    void searchCustomersIsRebuiltOnRestart() throws IOException {
+        // Given
+        Long similar = underTest.insertCustomerIfEmailAbsent(new Customer("Mary", "m.jones@gmail.com", 30))
+                .orElseThrow();
+        Long renamed = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@gmail.com", 30))
+                .orElseThrow();
+        Long deleted = underTest.insertCustomerIfEmailAbsent(new Customer("Mariana", "mariana@gmail.com", 30))
+                .orElseThrow();
+        Long substring = underTest.insertCustomerIfEmailAbsent(new Customer("Anna Mariani", "anna@gmail.com", 30))
+                .orElseThrow();
+        underTest.updateCustomer(new Customer(renamed, "Marianne Smith", null, null));
+        underTest.deleteCustomer(deleted);
+
+        // When
+        underTest.destroy();
+        underTest = open();
+        List<Customer> actual = underTest.searchCustomers("mari", 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(renamed, substring, similar);
+    }
+
+    @Test
+    void selectCustomersFiltersAndSortsByAge() {
+        // Given
+        Long oldest = underTest.insertCustomerIfEmailAbsent(new Customer("Bob", "bob@example.com", 25))
+                .orElseThrow();
+        Long youngest = underTest.insertCustomerIfEmailAbsent(new Customer("Carol", "carol@example.com", 18))
+                .orElseThrow();
+        underTest.insertCustomer(new Customer("Dave", "dave@example.org", 20));
+        Long middle = underTest.insertCustomerIfEmailAbsent(new Customer("Erin", "erin@example.com", 21))
+                .orElseThrow();
+        underTest.insertCustomer(new Customer("Frank", "frank@example.com", 40));
+
+        // When
+        List<Customer> actual = underTest.selectCustomers(new CustomerQuery(18, 25, "example.com", CustomerSort.AGE_DESC, 0, 10));
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(oldest, middle, youngest);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kakreak.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// what CustomerService adds on top of each dao: validation, the email filter, result mapping
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    @Benchmark
+    public Customer getCustomerById(CustomerBenchmarkContext context) {
+        return context.customerService().getCustomerById(context.randomId());
+    }
+
+    @Benchmark
+    public boolean isEmailAvailableTaken(CustomerBenchmarkContext context) {
+        return context.customerService().isEmailAvailable(context.randomEmail());
+    }
+
+    @Benchmark
+    public boolean isEmailAvailableFree(CustomerBenchmarkContext context) {
+        return context.customerService().isEmailAvailable(CustomerBenchmarkContext.newCustomer().getEmail());
+    }
+
+    @Benchmark
+    public void addCustomer(CustomerBenchmarkContext context) {
+        Customer customer = CustomerBenchmarkContext.newCustomer();
+        context.customerService().addCustomer(new CustomerRegistrationRequest(
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        ));
+    }
+
+    @Benchmark
+    public void updateCustomerById(CustomerBenchmarkContext context) {
+        context.customerService().updateCustomerById(context.randomId(),
+                new CustomerUpdateRequest(context.nextName(), null, null));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomerServiceBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
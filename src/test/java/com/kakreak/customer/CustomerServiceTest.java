@@ -9,8 +9,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.LongStream;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -21,11 +28,18 @@ class CustomerServiceTest {
 
     @Mock
     private CustomerDao customerDao;
+    @Mock
+    private CustomerCopyImporter customerCopyImporter;
+    @Mock
+    private CustomerEmailFilter customerEmailFilter;
+    @Mock
+    private CustomerListResponseCache customerListResponseCache;
     private CustomerService underTest;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, customerCopyImporter, customerEmailFilter, customerListResponseCache,
+                new CustomerRequestRules());
     }
 
     @Test
@@ -37,10 +51,133 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void getCustomerPageReturnsNextCursorWhenPageIsFull() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(11L, "Alex", "alex@gmail.com", 20),
+                new Customer(12L, "Jamila", "jamila@gmail.com", 21)
+        );
+        when(customerDao.selectCustomers(10L, 2)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomerPage(10L, 2);
+
+        // Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isEqualTo(12);
+    }
+
+    @Test
+    void getCustomerPageStartsFromBeginningAndEndsOnPartialPage() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "Alex", "alex@gmail.com", 20)
+        );
+        when(customerDao.selectCustomers(0L, 2)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomerPage(null, 2);
+
+        // Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenGetCustomerPageLimitIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerPage(null, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Limit must be between 1 and 1000");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void getCustomerPageSortedByAgeHasNoNextCursor() {
+        // Given
+        CustomerQuery query = new CustomerQuery(18, 25, "example.com", CustomerSort.AGE_DESC, 0, 1);
+        List<Customer> customers = List.of(
+                new Customer(7L, "Alex", "alex@example.com", 25)
+        );
+        when(customerDao.selectCustomers(query)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomerPage(null, 1, 18, 25, " @Example.com ", "-age");
+
+        // Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void getCustomerPageFilteredByAgeReturnsNextCursorWhenPageIsFull() {
+        // Given
+        CustomerQuery query = new CustomerQuery(18, null, null, CustomerSort.ID, 10, 1);
+        List<Customer> customers = List.of(
+                new Customer(11L, "Alex", "alex@gmail.com", 20)
+        );
+        when(customerDao.selectCustomers(query)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomerPage(10L, 1, 18, null, null, "id");
+
+        // Then
+        assertThat(actual.nextCursor()).isEqualTo(11);
+    }
+
+    @Test
+    void willThrowWhenGetCustomerPageSortIsUnknown() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerPage(null, 10, null, null, null, "name"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Sort must be one of id, age, -age");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void getCustomerQueryChecksTheLimitWithoutReading() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerQuery(null, 0, null, null, null, "id"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Limit must be between 1 and 1000");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenGetCustomerPageSortedByAgeHasCursor() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomerPage(10L, 10, 18, 25, null, "age"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("After is only supported when sorting by id");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void exportCustomers() {
+        // Given
+        Consumer<Customer> action = customer -> {
+        };
+
+        // When
+        underTest.exportCustomers(action);
+
+        // Then
+        verify(customerDao).forEachCustomer(action);
+    }
+
     @Test
     void canGetCustomerById() {
         // Given
-        Integer id = 10;
+        Long id = 10L;
         Customer customer = new Customer(
                 id,
                 "John Doe",
@@ -60,7 +197,7 @@ class CustomerServiceTest {
     @Test
     void willThrowWhenGetCustomerByIdReturnEmptyOptional() {
         // Given
-        Integer id = 10;
+        Long id = 10L;
 
         when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
 
@@ -78,7 +215,7 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        when(customerDao.existsPersonWithEmail(email)).thenReturn(false);
+        when(customerDao.insertCustomerIfEmailAbsent(any())).thenReturn(Optional.of(1L));
 
         CustomerRegistrationRequest customerRegistrationRequest = new CustomerRegistrationRequest(
                 "Alex",
@@ -92,7 +229,7 @@ class CustomerServiceTest {
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
-        verify(customerDao).insertCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).insertCustomerIfEmailAbsent(customerArgumentCaptor.capture());
 
         Customer customerArgumentCaptorValue = customerArgumentCaptor.getValue();
 
@@ -100,15 +237,99 @@ class CustomerServiceTest {
         assertThat(customerArgumentCaptorValue.getName()).isEqualTo(customerRegistrationRequest.name());
         assertThat(customerArgumentCaptorValue.getEmail()).isEqualTo(customerRegistrationRequest.email());
         assertThat(customerArgumentCaptorValue.getAge()).isEqualTo(customerRegistrationRequest.age());
+        verify(customerDao, never()).existsPersonWithEmail(any());
+        verify(customerEmailFilter).put(email);
+        verify(customerListResponseCache).invalidateAll();
     }
 
     @Test
-    void willThrowWhenEmailIsTakenWhileAddCustomer() {
+    void getAgeStatistics() {
+        // When
+        underTest.getAgeStatistics(5);
+
+        // Then
+        verify(customerDao).selectAgeStatistics(5);
+    }
+
+    @Test
+    void willThrowWhenAgeStatisticsBucketWidthIsNotPositive() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getAgeStatistics(0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Bucket width must be at least 1");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void searchCustomersTrimsTheQuery() {
+        // When
+        underTest.searchCustomers("  mari ", 20);
+
+        // Then
+        verify(customerDao).searchCustomers("mari", 20);
+    }
+
+    @Test
+    void willThrowWhenSearchQueryIsTooShort() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.searchCustomers(" ma ", 20))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Search query must have at least 3 characters");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenSearchLimitIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.searchCustomers("mari", 101))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Limit must be between 1 and 100");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void isEmailAvailableWhenFilterHasNoMatch() {
+        // Given
+        String email = "alex@gmail.com";
+
+        when(customerEmailFilter.mightContain(email)).thenReturn(false);
+
+        // When
+        boolean actual = underTest.isEmailAvailable(email);
+
+        // Then
+        assertThat(actual).isTrue();
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void isEmailAvailableChecksDatabaseWhenFilterMightMatch() {
         // Given
         String email = "alex@gmail.com";
 
+        when(customerEmailFilter.mightContain(email)).thenReturn(true);
         when(customerDao.existsPersonWithEmail(email)).thenReturn(true);
 
+        // When
+        boolean actual = underTest.isEmailAvailable(email);
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    void willThrowWhenEmailIsTakenWhileAddCustomer() {
+        // Given
+        String email = "alex@gmail.com";
+
+        when(customerDao.insertCustomerIfEmailAbsent(any())).thenReturn(Optional.empty());
+
         CustomerRegistrationRequest customerRegistrationRequest = new CustomerRegistrationRequest(
                 "Alex",
                 email,
@@ -121,29 +342,140 @@ class CustomerServiceTest {
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("Email already taken");
 
-        verify(customerDao).existsPersonWithEmail(email);
+        verify(customerEmailFilter, never()).put(any());
+        verify(customerListResponseCache, never()).invalidateAll();
+    }
+
+    @Test
+    void addCustomersReportsStatusPerItem() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 20),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 21),
+                new CustomerRegistrationRequest("Alex Again", "alex@gmail.com", 22),
+                new CustomerRegistrationRequest("Ali", "ali@gmail.com", 23),
+                new CustomerRegistrationRequest("No Age", "noage@gmail.com", null)
+        );
+        when(customerDao.selectExistingEmails(Set.of("alex@gmail.com", "jamila@gmail.com", "ali@gmail.com")))
+                .thenReturn(Set.of("jamila@gmail.com"));
+
+        // When
+        List<CustomerBatchRegistrationResult> actual = underTest.addCustomers(requests);
+
+        // Then
+        assertThat(actual).extracting(CustomerBatchRegistrationResult::status).containsExactly(
+                CustomerBatchRegistrationResult.Status.CREATED,
+                CustomerBatchRegistrationResult.Status.DUPLICATE_EMAIL,
+                CustomerBatchRegistrationResult.Status.DUPLICATE_IN_BATCH,
+                CustomerBatchRegistrationResult.Status.CREATED,
+                CustomerBatchRegistrationResult.Status.INVALID
+        );
+
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "ali@gmail.com");
+    }
+
+    @Test
+    void addCustomersDoesNotInsertWhenEveryEmailIsTaken() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 20)
+        );
+        when(customerDao.selectExistingEmails(Set.of("alex@gmail.com")))
+                .thenReturn(Set.of("alex@gmail.com"));
+
+        // When
+        List<CustomerBatchRegistrationResult> actual = underTest.addCustomers(requests);
+
+        // Then
+        assertThat(actual).extracting(CustomerBatchRegistrationResult::status)
+                .containsExactly(CustomerBatchRegistrationResult.Status.DUPLICATE_EMAIL);
+        verify(customerDao, never()).insertCustomers(any());
+    }
+
+    @Test
+    void willThrowWhenAddCustomersBatchIsEmpty() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomers(List.of()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Batch size must be between 1 and 5000");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void importCustomersFromCsv() {
+        // Given
+        InputStream csv = new ByteArrayInputStream("name,email,age\n".getBytes());
+        CustomerImportResult result = new CustomerImportResult(0, 0, 0);
+        when(customerCopyImporter.importCsv(eq(csv), any())).thenReturn(result);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomersFromCsv(csv);
+
+        // Then
+        assertThat(actual).isEqualTo(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importCustomersPutsInsertedEmailsIntoEmailFilter() {
+        // Given
+        InputStream csv = new ByteArrayInputStream("name,email,age\n".getBytes());
+        when(customerCopyImporter.importCsv(eq(csv), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, Consumer.class).accept("alex@gmail.com");
+            return new CustomerImportResult(2, 1, 1);
+        });
+
+        // When
+        underTest.importCustomersFromCsv(csv);
+
+        // Then
+        verify(customerEmailFilter).put("alex@gmail.com");
+        verify(customerEmailFilter, never()).rebuild();
+        verify(customerListResponseCache).invalidateAll();
+    }
+
+    @Test
+    void importCustomersFromNdjson() {
+        // Given
+        InputStream ndjson = new ByteArrayInputStream(new byte[0]);
+        CustomerImportResult result = new CustomerImportResult(0, 0, 0);
+        when(customerCopyImporter.importNdjson(eq(ndjson), any())).thenReturn(result);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomersFromNdjson(ndjson);
+
+        // Then
+        assertThat(actual).isEqualTo(result);
     }
 
     @Test
     void deleteCustomerById() {
         // Given
-        Integer id = 10;
+        Long id = 10L;
 
-        when(customerDao.exitsPersonWithId(id)).thenReturn(true);
+        when(customerDao.deleteCustomer(id)).thenReturn(true);
 
         // When
         underTest.deleteCustomerById(id);
 
         // Then
         verify(customerDao).deleteCustomer(id);
+        verify(customerDao, never()).exitsPersonWithId(id);
+        verify(customerListResponseCache).invalidateAll();
     }
 
     @Test
     void willThrowWhenDeleteCustomerByIdReturnEmptyOptional() {
         // Given
-        Integer id = 10;
+        Long id = 10L;
 
-        when(customerDao.exitsPersonWithId(id)).thenReturn(false);
+        when(customerDao.deleteCustomer(id)).thenReturn(false);
 
         // When
         // Then
@@ -151,21 +483,68 @@ class CustomerServiceTest {
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("Customer " + id + " does not exist.");
 
-        verify(customerDao).exitsPersonWithId(id);
+        verify(customerDao).deleteCustomer(id);
+    }
+
+    @Test
+    void getCustomersByIdsKeepsRequestOrder() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(3L, "Jamila", "jamila@gmail.com", 19);
+        when(customerDao.selectCustomersByIds(List.of(3L, 2L, 1L, 4L))).thenReturn(List.of(alex, jamila));
+
+        // When
+        CustomerLookupResult actual = underTest.getCustomersByIds(List.of(3L, 2L, 1L, 3L, 4L));
+
+        // Then
+        assertThat(actual.found()).containsExactly(jamila, alex);
+        assertThat(actual.notFound()).containsExactly(2L, 4L);
+    }
+
+    @Test
+    void willThrowWhenGetCustomersByIdsIsTooLarge() {
+        // Given
+        List<Long> ids = LongStream.rangeClosed(1, 501).boxed().toList();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(ids))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Lookup size must be between 1 and 500");
+
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void deleteCustomersByIdsReportsMissingIds() {
+        // Given
+        when(customerDao.deleteCustomersByIds(List.of(1L, 2L, 3L))).thenReturn(List.of(3L, 1L));
+
+        // When
+        CustomerBatchDeleteResult actual = underTest.deleteCustomersByIds(List.of(1L, 2L, 3L, 1L));
+
+        // Then
+        assertThat(actual.deleted()).containsExactly(1L, 3L);
+        assertThat(actual.notFound()).containsExactly(2L);
+    }
+
+    @Test
+    void willThrowWhenDeleteCustomersByIdsIsEmpty() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomersByIds(List.of()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Batch size must be between 1 and 5000");
+
+        verifyNoInteractions(customerDao);
     }
 
     @Test
     void updateCustomerById_ChangesName_Success() {
         // Given
-        Integer id = 10;
-        Customer customer = new Customer(
-                id,
-                "John Doe",
-                "doe@gmail.com",
-                25
-        );
+        Long id = 10L;
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(CustomerUpdateResult.UPDATED);
 
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
                 "Alex",
@@ -180,25 +559,24 @@ class CustomerServiceTest {
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao, never()).selectCustomerById(any());
 
         Customer customerArgumentCaptorValue = customerArgumentCaptor.getValue();
 
         assertThat(customerArgumentCaptorValue.getId()).isEqualTo(id);
         assertThat(customerArgumentCaptorValue.getName()).isEqualTo(customerUpdateRequest.name());
+        assertThat(customerArgumentCaptorValue.getEmail()).isNull();
+        assertThat(customerArgumentCaptorValue.getAge()).isNull();
+        verify(customerEmailFilter, never()).put(any());
+        verify(customerListResponseCache).invalidateAll();
     }
 
     @Test
     void updateCustomerById_ChangesEmail_Success() {
         // Given
-        Integer id = 10;
-        Customer customer = new Customer(
-                id,
-                "John Doe",
-                "doe@gmail.com",
-                25
-        );
+        Long id = 10L;
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(CustomerUpdateResult.UPDATED);
 
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
                 null,
@@ -213,25 +591,21 @@ class CustomerServiceTest {
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao, never()).selectCustomerById(any());
 
         Customer customerArgumentCaptorValue = customerArgumentCaptor.getValue();
 
         assertThat(customerArgumentCaptorValue.getId()).isEqualTo(id);
         assertThat(customerArgumentCaptorValue.getEmail()).isEqualTo(customerUpdateRequest.email());
+        verify(customerEmailFilter).put("test@gmail.com");
     }
 
     @Test
     void updateCustomerById_ChangesAge_Success() {
         // Given
-        Integer id = 10;
-        Customer customer = new Customer(
-                id,
-                "John Doe",
-                "doe@gmail.com",
-                25
-        );
+        Long id = 10L;
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(CustomerUpdateResult.UPDATED);
 
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
                 null,
@@ -246,6 +620,7 @@ class CustomerServiceTest {
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao, never()).selectCustomerById(any());
 
         Customer customerArgumentCaptorValue = customerArgumentCaptor.getValue();
 
@@ -256,15 +631,7 @@ class CustomerServiceTest {
     @Test
     void updateCustomerById_NoChanges_ThrowException() {
         // Given
-        Integer id = 10;
-        Customer customer = new Customer(
-                id,
-                "John Doe",
-                "doe@mgmail.com",
-                25
-        );
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        Long id = 10L;
 
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
                 null,
@@ -280,4 +647,94 @@ class CustomerServiceTest {
 
         verify(customerDao, never()).updateCustomer(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateCustomerById_SameValues_ThrowException() {
+        // Given
+        Long id = 10L;
+
+        when(customerDao.updateCustomer(any())).thenReturn(CustomerUpdateResult.UNCHANGED);
+
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
+                "John Doe",
+                null,
+                null
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(id, customerUpdateRequest))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("No data changed");
+
+        verify(customerListResponseCache, never()).invalidateAll();
+    }
+
+    @Test
+    void updateCustomerById_NotFound_ThrowException() {
+        // Given
+        Long id = 10L;
+
+        when(customerDao.updateCustomer(any())).thenReturn(CustomerUpdateResult.NOT_FOUND);
+
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
+                "John Doe",
+                null,
+                null
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(id, customerUpdateRequest))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer " + id + " does not exists");
+    }
+
+    @Test
+    void updateCustomerById_EmailTaken_ThrowException() {
+        // Given
+        Long id = 10L;
+
+        when(customerDao.updateCustomer(any())).thenThrow(new DuplicateKeyException("customer_email_unique"));
+
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
+                null,
+                "taken@gmail.com",
+                null
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomerById(id, customerUpdateRequest))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("Email already taken");
+    }
+
+    @Test
+    void canGetVersionedCustomer() {
+        // Given
+        Long id = 10L;
+        VersionedCustomer customer = new VersionedCustomer(new Customer(id, "Alex", "alex@gmail.com", 19), 42L);
+        when(customerDao.selectVersionedCustomerById(id)).thenReturn(Optional.of(customer));
+
+        // When
+        VersionedCustomer actual = underTest.getVersionedCustomerById(id);
+
+        // Then
+        assertThat(actual).isEqualTo(customer);
+        verify(customerDao, never()).selectCustomerById(any());
+    }
+
+    @Test
+    void willThrowWhenGetVersionedCustomerFindsNoCustomer() {
+        // Given
+        Long id = 10L;
+        when(customerDao.selectVersionedCustomerById(id)).thenReturn(Optional.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getVersionedCustomerById(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Customer " + id + " does not exists");
+    }
+}
@@ -0,0 +1,81 @@
+package com.kakreak.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerTrigramIndexTest {
+
+    private final CustomerTrigramIndex underTest = new CustomerTrigramIndex();
+    private final Map<Long, Customer> customers = new HashMap<>();
+
+    @Test
+    void removedCustomersLeaveTheirPostings() {
+        // Given
+        for (long id = 1; id <= 4; id++) {
+            add(new Customer(id, "Mariana " + id, "mariana" + id + "@gmail.com", 30));
+        }
+
+        // When
+        for (long id = 1; id <= 3; id++) {
+            underTest.remove(id, customers.remove(id));
+        }
+
+        // Then
+        // three of four marked is past half, so the posting was copied without them
+        assertThat(underTest.postingSize("mar")).isEqualTo(1);
+        assertThat(underTest.postingSize("gma")).isEqualTo(1);
+        assertThat(search("mari")).extracting(Customer::getId).containsExactly(4L);
+    }
+
+    @Test
+    void updatesMoveTheIdToThePostingsOfTheNewRow() {
+        // Given
+        Customer before = new Customer(1L, "Mariana", "mariana@gmail.com", 30);
+        Customer after = new Customer(1L, "Zoe", "zoe@gmail.com", 30);
+        add(before);
+
+        // When
+        customers.put(1L, after);
+        underTest.update(1, before, after);
+
+        // Then
+        assertThat(underTest.postingSize("mar")).isZero();
+        assertThat(underTest.postingSize("zoe")).isEqualTo(1);
+        assertThat(underTest.postingSize("gma")).isEqualTo(1);
+        assertThat(search("mari")).isEmpty();
+        assertThat(search("zoe")).containsExactly(after);
+    }
+
+    @Test
+    void anIdAddedBackIsListedOnce() {
+        // Given
+        Customer mariana = new Customer(1L, "Mariana", "mariana@gmail.com", 30);
+        Customer zoe = new Customer(1L, "Zoe", "zoe@gmail.com", 30);
+        add(mariana);
+        add(new Customer(2L, "Marianne", "marianne@gmail.com", 30));
+        add(new Customer(3L, "Marie", "marie@gmail.com", 30));
+
+        // When
+        underTest.update(1, mariana, zoe);
+        underTest.update(1, zoe, mariana);
+
+        // Then
+        assertThat(underTest.postingSize("mar")).isEqualTo(3);
+        assertThat(search("mari")).extracting(Customer::getId).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    private void add(Customer customer) {
+        customers.put(customer.getId(), customer);
+        underTest.add(customer.getId(), customer);
+    }
+
+    private List<Customer> search(String query) {
+        return underTest.search(query, 10, id -> Optional.ofNullable(customers.get(id)));
+    }
+}
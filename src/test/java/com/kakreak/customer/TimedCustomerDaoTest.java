@@ -0,0 +1,117 @@
+package com.kakreak.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimedCustomerDaoTest {
+
+    @Mock
+    private CustomerDao delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private TimedCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new TimedCustomerDao(delegate, "jdbc", meterRegistry);
+    }
+
+    @Test
+    void selectCustomerByIdRecordsFoundAndNotFound() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        when(delegate.selectCustomerById(2L)).thenReturn(Optional.empty());
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(2L);
+        underTest.selectCustomerById(2L);
+
+        // Then
+        assertThat(actual).contains(customer);
+        assertThat(count("selectCustomerById", "found")).isEqualTo(1);
+        assertThat(count("selectCustomerById", "not_found")).isEqualTo(2);
+    }
+
+    @Test
+    void insertCustomerIfEmailAbsentRecordsDuplicate() {
+        // Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 21);
+        when(delegate.insertCustomerIfEmailAbsent(customer)).thenReturn(Optional.empty());
+
+        // When
+        underTest.insertCustomerIfEmailAbsent(customer);
+
+        // Then
+        assertThat(count("insertCustomerIfEmailAbsent", "duplicate")).isEqualTo(1);
+    }
+
+    @Test
+    void constraintViolationIsRecordedAsDuplicateAndRethrown() {
+        // Given
+        List<Customer> customers = List.of(new Customer("Alex", "alex@gmail.com", 21));
+        doThrow(new DuplicateKeyException("customer_email_unique")).when(delegate).insertCustomers(customers);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomers(customers))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(count("insertCustomers", "duplicate")).isEqualTo(1);
+    }
+
+    @Test
+    void otherFailuresAreRecordedAsErrorAndRethrown() {
+        // Given
+        when(delegate.selectAllCustomers()).thenThrow(new IllegalStateException("connection refused"));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.selectAllCustomers())
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(count("selectAllCustomers", "error")).isEqualTo(1);
+    }
+
+    @Test
+    void updateCustomerRecordsTheUpdateResult() {
+        // Given
+        Customer update = new Customer(1L, null, null, 22);
+        when(delegate.updateCustomer(update)).thenReturn(
+                CustomerUpdateResult.UPDATED,
+                CustomerUpdateResult.UNCHANGED,
+                CustomerUpdateResult.NOT_FOUND
+        );
+
+        // When
+        underTest.updateCustomer(update);
+        underTest.updateCustomer(update);
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(count("updateCustomer", "success")).isEqualTo(1);
+        assertThat(count("updateCustomer", "unchanged")).isEqualTo(1);
+        assertThat(count("updateCustomer", "not_found")).isEqualTo(1);
+    }
+
+    private long count(String method, String outcome) {
+        return meterRegistry.get(TimedCustomerDao.METRIC_NAME)
+                .tag("dao", "jdbc")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer()
+                .count();
+    }
+}
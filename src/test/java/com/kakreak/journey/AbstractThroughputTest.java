@@ -0,0 +1,119 @@
+package com.kakreak.journey;
+
+import com.kakreak.customer.Customer;
+import com.kakreak.customer.CustomerPage;
+import com.kakreak.customer.CustomerRegistrationRequest;
+import com.sun.management.UnixOperatingSystemMXBean;
+import net.datafaker.Faker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// drives GET api/v1/customers/{id} from many concurrent clients, run with -Pperformance
+@Tag("performance")
+abstract class AbstractThroughputTest {
+
+    // descriptors left for the jars, the database pools and the logs
+    private static final long RESERVED_FILE_DESCRIPTORS = 2_000;
+
+    @LocalServerPort
+    private int port;
+
+    private List<Long> customerIds;
+
+    @BeforeEach
+    void setUp() {
+        WebTestClient webTestClient = new LoadDriver(port, 1).webTestClient();
+        for (int i = 0; i < 10; i++) {
+            webTestClient.post()
+                    .uri("/api/v1/customers/")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(new CustomerRegistrationRequest(
+                            new Faker().name().fullName(),
+                            UUID.randomUUID() + "@throughput.com",
+                            30
+                    )), CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+        customerIds = webTestClient.get()
+                .uri("/api/v1/customers/?limit=100")
+                .exchange()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody()
+                .customers()
+                .stream()
+                .map(Customer::getId)
+                .toList();
+
+        // let the jit and the connection pool settle before measuring
+        drive(100, 100, 20);
+    }
+
+    @Test
+    void thousandConcurrentClients() {
+        int connections = connections(1_000);
+        report(1_000, connections, drive(1_000, connections, 20));
+    }
+
+    @Test
+    void tenThousandConcurrentClients() {
+        int connections = connections(10_000);
+        report(10_000, connections, drive(10_000, connections, 3));
+    }
+
+    protected abstract String mode();
+
+    // the client and the server end of every connection are open in this jvm, so past the descriptor
+    // limit the clients share fewer connections than there are clients, waiting for a free one
+    private static int connections(int clients) {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os) {
+            long spare = os.getMaxFileDescriptorCount() - os.getOpenFileDescriptorCount() - RESERVED_FILE_DESCRIPTORS;
+            return (int) Math.max(1, Math.min(clients, spare / 2));
+        }
+        return clients;
+    }
+
+    private LoadDriver.Result drive(int clients, int connections, int requestsPerClient) {
+        return new LoadDriver(port, connections).run(clients, requestsPerClient, webTestClient -> {
+            Long id = customerIds.get(ThreadLocalRandom.current().nextInt(customerIds.size()));
+            webTestClient.get()
+                    .uri("/api/v1/customers/{id}", id)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody(Customer.class);
+            return "get";
+        });
+    }
+
+    private void report(int clients, int connections, LoadDriver.Result result) {
+        LoadDriver.Percentiles percentiles = result.percentiles();
+        System.out.printf("THROUGHPUT mode=%s clients=%d connections=%d requests=%d errors=%d rps=%.0f p50=%.1fms p99=%.1fms%n",
+                mode(),
+                clients,
+                connections,
+                result.requests(),
+                result.errors(),
+                result.requestsPerSecond(),
+                percentiles.p50(),
+                percentiles.p99());
+        assertThat(result.errors())
+                .as("requests failed, the first with %s", result.firstError())
+                .isZero();
+    }
+}
@@ -1,14 +1,22 @@
 package com.kakreak.journey;
 
 import com.kakreak.customer.Customer;
+import com.kakreak.customer.CustomerAgeStatistics;
+import com.kakreak.customer.CustomerEmailAvailability;
 import com.kakreak.customer.CustomerRegistrationRequest;
+import com.kakreak.customer.CustomerUpdateRequest;
 import net.datafaker.Faker;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
@@ -19,7 +27,8 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
-@SpringBootTest(webEnvironment = RANDOM_PORT)
+// the customer cache is on, so a write through either api must reach it
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "customer.cache.enabled=true")
 @Configuration
 public class CustomerIntegrationTest {
 
@@ -28,8 +37,14 @@ public class CustomerIntegrationTest {
 
     private static final Random RANDOM = new Random();
 
-    @Test
-    void canRegisterACustomer() {
+    // the servlet api and its reactive twin answer the same journeys
+    static List<String> basePaths() {
+        return List.of("/api/v1/customers", "/api/v1/reactive/customers");
+    }
+
+    @ParameterizedTest
+    @MethodSource("basePaths")
+    void canRegisterACustomer(String basePath) {
         // create a registration request
         Faker faker = new Faker();
 
@@ -45,7 +60,7 @@ public class CustomerIntegrationTest {
 
         // send a post request
         webTestClient.post()
-                .uri("/api/v1/customers/")
+                .uri(basePath + "/")
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(request), CustomerRegistrationRequest.class)
@@ -55,7 +70,7 @@ public class CustomerIntegrationTest {
 
         // get all customers
         List<Customer> allCustomers = webTestClient.get()
-                .uri("/api/v1/customers/")
+                .uri(basePath + "/")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -77,7 +92,7 @@ public class CustomerIntegrationTest {
                 .contains(expectedCustomer);
 
         // get customer by id
-        int id = allCustomers.stream()
+        long id = allCustomers.stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
                 .findFirst()
@@ -86,7 +101,7 @@ public class CustomerIntegrationTest {
         expectedCustomer.setId(id);
 
         webTestClient.get()
-                .uri("/api/v1/customers/{customerId}", id)
+                .uri(basePath + "/{customerId}", id)
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -96,8 +111,9 @@ public class CustomerIntegrationTest {
                 .isEqualTo(expectedCustomer);
     }
 
-    @Test
-    void canDeleteCustomer() {
+    @ParameterizedTest
+    @MethodSource("basePaths")
+    void canDeleteCustomer(String basePath) {
         // create a registration request
         Faker faker = new Faker();
 
@@ -113,7 +129,7 @@ public class CustomerIntegrationTest {
 
         // send a post request
         webTestClient.post()
-                .uri("/api/v1/customers/")
+                .uri(basePath + "/")
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(request), CustomerRegistrationRequest.class)
@@ -123,7 +139,7 @@ public class CustomerIntegrationTest {
 
         // get all customers
         List<Customer> allCustomers = webTestClient.get()
-                .uri("/api/v1/customers/")
+                .uri(basePath + "/")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -134,7 +150,7 @@ public class CustomerIntegrationTest {
                 .getResponseBody();
 
         // get customer by id
-        int id = allCustomers.stream()
+        long id = allCustomers.stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
                 .findFirst()
@@ -142,22 +158,23 @@ public class CustomerIntegrationTest {
 
         // delete customer by id
         webTestClient.delete()
-                .uri("/api/v1/customers/{customerId}", id)
+                .uri(basePath + "/{customerId}", id)
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
                 .isOk();
 
         webTestClient.get()
-                .uri("/api/v1/customers/{customerId}", id)
+                .uri(basePath + "/{customerId}", id)
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
                 .isNotFound();
     }
 
-    @Test
-    void canUpdateCustomer() {
+    @ParameterizedTest
+    @MethodSource("basePaths")
+    void canUpdateCustomer(String basePath) {
         // create a registration request
         Faker faker = new Faker();
 
@@ -173,7 +190,7 @@ public class CustomerIntegrationTest {
 
         // send a post request
         webTestClient.post()
-                .uri("/api/v1/customers/")
+                .uri(basePath + "/")
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(request), CustomerRegistrationRequest.class)
@@ -183,7 +200,7 @@ public class CustomerIntegrationTest {
 
         // get all customers
         List<Customer> allCustomers = webTestClient.get()
-                .uri("/api/v1/customers/")
+                .uri(basePath + "/")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -194,7 +211,7 @@ public class CustomerIntegrationTest {
                 .getResponseBody();
 
         // get customer by id
-        int id = allCustomers.stream()
+        long id = allCustomers.stream()
                 .filter(c -> c.getEmail().equals(email))
                 .map(Customer::getId)
                 .findFirst()
@@ -212,7 +229,7 @@ public class CustomerIntegrationTest {
         );
 
         webTestClient.put()
-                .uri("/api/v1/customers/{customerId}", id)
+                .uri(basePath + "/{customerId}", id)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(updateRequest), CustomerRegistrationRequest.class)
@@ -230,7 +247,7 @@ public class CustomerIntegrationTest {
         expectedCustomer.setId(id);
 
         Customer updatedCustomer = webTestClient.get()
-                .uri("/api/v1/customers/{customerId}", id)
+                .uri(basePath + "/{customerId}", id)
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
@@ -242,4 +259,326 @@ public class CustomerIntegrationTest {
         assertThat(updatedCustomer).isEqualTo(expectedCustomer);
     }
 
+    @ParameterizedTest
+    @MethodSource("basePaths")
+    void canExportCustomersAsNdjson(String basePath) {
+        // create a registration request
+        Faker faker = new Faker();
+
+        String name = faker.name().fullName();
+        String email = faker.name().lastName() + UUID.randomUUID() + "@football.com";
+        int age = RANDOM.nextInt(16, 99);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name,
+                email,
+                age
+        );
+
+        // send a post request
+        webTestClient.post()
+                .uri(basePath + "/")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // export all customers
+        List<Customer> exportedCustomers = webTestClient.get()
+                .uri(basePath + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // make sure that customer is present
+        Customer expectedCustomer = new Customer(
+                name,
+                email,
+                age
+        );
+
+        assertThat(exportedCustomers)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .contains(expectedCustomer);
+    }
+
+    @ParameterizedTest
+    @MethodSource("basePaths")
+    void canCheckEmailAvailability(String basePath) {
+        // create a registration request
+        Faker faker = new Faker();
+
+        String name = faker.name().fullName();
+        String email = faker.name().lastName() + UUID.randomUUID() + "@football.com";
+        int age = RANDOM.nextInt(16, 99);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name,
+                email,
+                age
+        );
+
+        // email is available before registration
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(basePath + "/email-availability")
+                        .queryParam("email", email)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerEmailAvailability.class)
+                .isEqualTo(new CustomerEmailAvailability(email, true));
+
+        // send a post request
+        webTestClient.post()
+                .uri(basePath + "/")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // email is taken after registration
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(basePath + "/email-availability")
+                        .queryParam("email", email)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerEmailAvailability.class)
+                .isEqualTo(new CustomerEmailAvailability(email, false));
+
+        // registering the same email again is rejected
+        webTestClient.post()
+                .uri(basePath + "/")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @ParameterizedTest
+    @MethodSource("basePaths")
+    void canGetAgeStatistics(String basePath) {
+        // register a customer so the table is not empty
+        Faker faker = new Faker();
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                faker.name().fullName(),
+                faker.name().lastName() + UUID.randomUUID() + "@football.com",
+                RANDOM.nextInt(16, 99)
+        );
+
+        webTestClient.post()
+                .uri(basePath + "/")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // get the age statistics
+        CustomerAgeStatistics statistics = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(basePath + "/statistics/age")
+                        .queryParam("bucketWidth", 5)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerAgeStatistics.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(statistics).isNotNull();
+        assertThat(statistics.count()).isPositive();
+        assertThat(statistics.min()).isLessThanOrEqualTo(request.age());
+        assertThat(statistics.max()).isGreaterThanOrEqualTo(request.age());
+        assertThat(statistics.histogram().stream()
+                .mapToLong(CustomerAgeStatistics.AgeBucket::count)
+                .sum())
+                .isEqualTo(statistics.count());
+    }
+
+    @Test
+    void canGetCustomerConditionally() {
+        // register a customer
+        Faker faker = new Faker();
+        String email = faker.name().lastName() + UUID.randomUUID() + "@football.com";
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                faker.name().fullName(),
+                email,
+                RANDOM.nextInt(16, 99)
+        );
+
+        webTestClient.post()
+                .uri("/api/v1/customers/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // get all customers along with the table etag
+        EntityExchangeResult<List<Customer>> all = webTestClient.get()
+                .uri("/api/v1/customers/")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Customer.class)
+                .returnResult();
+        String listETag = all.getResponseHeaders().getETag();
+        long id = all.getResponseBody().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // get the customer along with its etag
+        String customerETag = webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .exists(HttpHeaders.ETAG)
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        // neither changed, both answer 304 without a body
+        webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .ifNoneMatch(customerETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        webTestClient.get()
+                .uri("/api/v1/customers/")
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        // an invalid page is refused even though the etag still matches
+        webTestClient.get()
+                .uri("/api/v1/customers/?limit=0")
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        // update the customer
+        webTestClient.put()
+                .uri("/api/v1/customers/{customerId}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Changed " + UUID.randomUUID(), null, null)),
+                        CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // both etags are stale now
+        webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .ifNoneMatch(customerETag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .value(HttpHeaders.ETAG, eTag -> assertThat(eTag).isNotEqualTo(customerETag));
+
+        webTestClient.get()
+                .uri("/api/v1/customers/")
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void servletReadsSeeReactiveWrites() {
+        // register a customer and read it through the servlet api, which caches it
+        Faker faker = new Faker();
+        String email = faker.name().lastName() + UUID.randomUUID() + "@football.com";
+        webTestClient.post()
+                .uri("/api/v1/customers/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(faker.name().fullName(), email, 30)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        long id = webTestClient.get()
+                .uri("/api/v1/customers/")
+                .exchange()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // update it through the reactive api
+        String newName = "Changed " + UUID.randomUUID();
+        webTestClient.put()
+                .uri("/api/v1/reactive/customers/{customerId}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(newName, null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // the servlet api serves the new row
+        webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .value(customer -> assertThat(customer.getName()).isEqualTo(newName));
+
+        // delete it through the reactive api, the servlet api no longer finds it
+        webTestClient.delete()
+                .uri("/api/v1/reactive/customers/{customerId}", id)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
 }
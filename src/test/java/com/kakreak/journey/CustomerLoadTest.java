@@ -0,0 +1,173 @@
+package com.kakreak.journey;
+
+import com.kakreak.AbstractTestContainers;
+import com.kakreak.customer.Customer;
+import com.kakreak.customer.CustomerBatchRegistrationResult;
+import com.kakreak.customer.CustomerPage;
+import com.kakreak.customer.CustomerRegistrationRequest;
+import com.kakreak.customer.CustomerUpdateRequest;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// a read/write mix against api/v1/customers/ that fails when a latency or throughput budget
+// is missed, run with -Pload. Every load.* system property below can be overridden on the
+// maven command line, e.g. -Dload.clients=500 -Dload.budget.p99-ms=250
+@Tag("performance")
+@Tag("load")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class CustomerLoadTest extends AbstractTestContainers {
+
+    private static final int CUSTOMERS = Integer.getInteger("load.customers", 10_000);
+    private static final int CLIENTS = Integer.getInteger("load.clients", 100);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 20_000);
+    private static final double WRITE_RATIO = Double.parseDouble(System.getProperty("load.write-ratio", "0.2"));
+
+    private static final double BUDGET_P50_MS = Double.parseDouble(System.getProperty("load.budget.p50-ms", "400"));
+    private static final double BUDGET_P95_MS = Double.parseDouble(System.getProperty("load.budget.p95-ms", "1000"));
+    private static final double BUDGET_P99_MS = Double.parseDouble(System.getProperty("load.budget.p99-ms", "1500"));
+    private static final double BUDGET_P999_MS = Double.parseDouble(System.getProperty("load.budget.p999-ms", "3000"));
+    private static final double BUDGET_MIN_RPS = Double.parseDouble(System.getProperty("load.budget.min-rps", "250"));
+
+    private static final int SEED_BATCH_SIZE = 5000;
+    private static final int PAGE_SIZE = 1000;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void readWriteMixStaysWithinBudget() {
+        LoadDriver driver = new LoadDriver(port, CLIENTS);
+        List<Long> customerIds = seed(driver.webTestClient());
+
+        // let the jit, the connection pools and the caches settle before measuring
+        driver.run(CLIENTS, Math.max(1, REQUESTS / CLIENTS / 10), webTestClient -> send(webTestClient, customerIds));
+        LoadDriver.Result result = driver.run(CLIENTS, REQUESTS / CLIENTS,
+                webTestClient -> send(webTestClient, customerIds));
+
+        LoadDriver.Percentiles percentiles = result.percentiles();
+        System.out.printf("LOAD customers=%d clients=%d write-ratio=%.2f requests=%d errors=%d rps=%.0f %s%n",
+                CUSTOMERS, CLIENTS, WRITE_RATIO, result.requests(), result.errors(), result.requestsPerSecond(), percentiles);
+        result.percentilesByOperation()
+                .forEach((operation, byOperation) -> System.out.printf("LOAD operation=%s %s%n", operation, byOperation));
+
+        SoftAssertions budgets = new SoftAssertions();
+        budgets.assertThat(result.errors())
+                .as("failed requests, the first with %s", result.firstError())
+                .isZero();
+        budgets.assertThat(percentiles.p50()).as("p50 ms").isLessThanOrEqualTo(BUDGET_P50_MS);
+        budgets.assertThat(percentiles.p95()).as("p95 ms").isLessThanOrEqualTo(BUDGET_P95_MS);
+        budgets.assertThat(percentiles.p99()).as("p99 ms").isLessThanOrEqualTo(BUDGET_P99_MS);
+        budgets.assertThat(percentiles.p999()).as("p99.9 ms").isLessThanOrEqualTo(BUDGET_P999_MS);
+        budgets.assertThat(result.requestsPerSecond()).as("requests per second").isGreaterThanOrEqualTo(BUDGET_MIN_RPS);
+        budgets.assertAll();
+    }
+
+    // one request of the mix, writes split evenly between registrations and updates,
+    // reads mostly by id with the occasional page
+    private static String send(WebTestClient webTestClient, List<Long> customerIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long id = customerIds.get(random.nextInt(customerIds.size()));
+        double roll = random.nextDouble();
+        if (roll < WRITE_RATIO / 2) {
+            webTestClient.post()
+                    .uri("/api/v1/customers/")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(newRegistration()), CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .isEmpty();
+            return "register";
+        }
+        if (roll < WRITE_RATIO) {
+            webTestClient.put()
+                    .uri("/api/v1/customers/{customerId}", id)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(new CustomerUpdateRequest("Load " + UUID.randomUUID(), null, null)),
+                            CustomerUpdateRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .isEmpty();
+            return "update";
+        }
+        if (random.nextInt(10) == 0) {
+            webTestClient.get()
+                    .uri("/api/v1/customers/?after={after}&limit=50", id)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody(CustomerPage.class);
+            return "page";
+        }
+        webTestClient.get()
+                .uri("/api/v1/customers/{customerId}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class);
+        return "get";
+    }
+
+    private static List<Long> seed(WebTestClient webTestClient) {
+        for (int seeded = 0; seeded < CUSTOMERS; seeded += SEED_BATCH_SIZE) {
+            List<CustomerRegistrationRequest> batch = new ArrayList<>();
+            for (int i = seeded; i < Math.min(CUSTOMERS, seeded + SEED_BATCH_SIZE); i++) {
+                batch.add(newRegistration());
+            }
+            webTestClient.post()
+                    .uri("/api/v1/customers/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(batch), new ParameterizedTypeReference<List<CustomerRegistrationRequest>>() {
+                    })
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBodyList(CustomerBatchRegistrationResult.class)
+                    .hasSize(batch.size());
+        }
+
+        List<Long> customerIds = new ArrayList<>();
+        Long after = 0L;
+        while (after != null) {
+            CustomerPage page = webTestClient.get()
+                    .uri("/api/v1/customers/?after={after}&limit={limit}", after, PAGE_SIZE)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody(CustomerPage.class)
+                    .returnResult()
+                    .getResponseBody();
+            page.customers().forEach(customer -> customerIds.add(customer.getId()));
+            after = page.nextCursor();
+        }
+        return customerIds;
+    }
+
+    private static CustomerRegistrationRequest newRegistration() {
+        return new CustomerRegistrationRequest(
+                "Load Customer",
+                UUID.randomUUID() + "@load.com",
+                ThreadLocalRandom.current().nextInt(16, 99)
+        );
+    }
+}
@@ -0,0 +1,126 @@
+package com.kakreak.journey;
+
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+// many blocking clients sharing one connection pool, each request timed on its own
+final class LoadDriver {
+
+    private final WebTestClient webTestClient;
+
+    LoadDriver(int port, int connections) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("load")
+                .maxConnections(connections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.webTestClient = WebTestClient.bindToServer(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .baseUrl("http://localhost:" + port)
+                .responseTimeout(Duration.ofMinutes(5))
+                .build();
+    }
+
+    WebTestClient webTestClient() {
+        return webTestClient;
+    }
+
+    // the request sends one exchange and returns the name of the operation it timed
+    Result run(int clients, int requestsPerClient, Function<WebTestClient, String> request) {
+        String[] operations = new String[clients * requestsPerClient];
+        long[] latencies = new long[clients * requestsPerClient];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long begin;
+        // the clients themselves are virtual threads, so the driver never runs out of threads
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                executor.submit(() -> {
+                    start.await();
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        int i = client * requestsPerClient + r;
+                        long requestBegin = System.nanoTime();
+                        try {
+                            operations[i] = request.apply(webTestClient);
+                        } catch (Throwable e) {
+                            operations[i] = "failed";
+                            errors.incrementAndGet();
+                            firstError.compareAndSet(null, e);
+                        }
+                        latencies[i] = System.nanoTime() - requestBegin;
+                    }
+                    return null;
+                });
+            }
+            begin = System.nanoTime();
+            start.countDown();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return new Result(operations, latencies, elapsed, errors.get(), firstError.get());
+    }
+
+    record Result(String[] operations, long[] latencies, long elapsedNanos, int errors, Throwable firstError) {
+
+        int requests() {
+            return latencies.length;
+        }
+
+        double requestsPerSecond() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        Percentiles percentiles() {
+            return Percentiles.of(latencies.clone());
+        }
+
+        Map<String, Percentiles> percentilesByOperation() {
+            Map<String, List<Long>> byOperation = new TreeMap<>();
+            for (int i = 0; i < operations.length; i++) {
+                byOperation.computeIfAbsent(operations[i], operation -> new ArrayList<>()).add(latencies[i]);
+            }
+            Map<String, Percentiles> percentiles = new TreeMap<>();
+            byOperation.forEach((operation, samples) ->
+                    percentiles.put(operation, Percentiles.of(samples.stream().mapToLong(Long::longValue).toArray())));
+            return percentiles;
+        }
+    }
+
+    // nearest rank latencies in milliseconds
+    record Percentiles(int count, double p50, double p95, double p99, double p999) {
+
+        static Percentiles of(long[] latencies) {
+            Arrays.sort(latencies);
+            return new Percentiles(
+                    latencies.length,
+                    rank(latencies, 0.50),
+                    rank(latencies, 0.95),
+                    rank(latencies, 0.99),
+                    rank(latencies, 0.999)
+            );
+        }
+
+        private static double rank(long[] sortedLatencies, double fraction) {
+            return sortedLatencies[(int) Math.ceil(fraction * sortedLatencies.length) - 1] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return "count=%d p50=%.1fms p95=%.1fms p99=%.1fms p99.9=%.1fms".formatted(count, p50, p95, p99, p999);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.kakreak.journey;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.virtual-threads.enabled=true",
+        "server.tomcat.max-connections=20000",
+        "server.tomcat.accept-count=10000"
+})
+class VirtualThreadThroughputTest extends AbstractThroughputTest {
+
+    @Override
+    protected String mode() {
+        return "virtual";
+    }
+}